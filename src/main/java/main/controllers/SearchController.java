@@ -22,14 +22,17 @@ public class SearchController {
     private SearchService searchService;
     private static final int DEFAULT_OFFSET = 0; // сдвиг от начала списка результатов по умолчанию
     private static final int DEFAULT_LIMIT = 20; // кол-во результатов по умолчанию
+    private static final int MAX_OFFSET = 10000; // максимальный сдвиг от начала списка результатов
+    private static final int MAX_LIMIT = 100; // максимальное кол-во результатов
 
     /**
      * Осуществляет поиск страниц по переданному поисковому запросу (параметр query)
      * @param qParams список параметров запроса, может содержать параметры:
      *                <p> query - поисковый запрос (обязательный),
      *                <p> site - по какому вебсайту искать,
-     *                <p> offset - сдвиг от начала списка результатов,
-     *                <p> limit - количество результатов, которое необходимо вывести.
+     *                <p> offset - сдвиг от начала списка результатов, от 0 до {@value #MAX_OFFSET},
+     *                <p> limit - количество результатов, которое необходимо вывести, от 0 до {@value #MAX_LIMIT},
+     *                <p> cursor - позиция из предыдущего ответа, после которой выводятся результаты, вместо offset.
      * @return обьект ответа с результатми поиска в формате JSON
      */
     @GetMapping("/search")
@@ -48,10 +51,37 @@ public class SearchController {
         String siteUrl = qParams.get("site");
         String offsetString = qParams.get("offset");
         String limitString = qParams.get("limit");
-        int offset = offsetString == null ? DEFAULT_OFFSET : Integer.parseInt(offsetString);
-        int limit = limitString == null ? DEFAULT_LIMIT : Integer.parseInt(limitString);
-        response = searchService.processSearch(query, siteUrl, offset, limit);
+        int offset = parseParam(offsetString, DEFAULT_OFFSET, MAX_OFFSET);
+        int limit = parseParam(limitString, DEFAULT_LIMIT, MAX_LIMIT);
+        if (offset < 0 || limit < 0) {
+            response.put("result", false);
+            response.put("error", offset < 0 ?
+                    "Сдвиг от начала списка результатов должен быть числом от 0 до " + MAX_OFFSET :
+                    "Количество результатов должно быть числом от 0 до " + MAX_LIMIT);
+            timeCounter.printStats();
+            return new ResponseEntity<>(response.toJson(), httpHeaders, HttpStatus.OK);
+        }
+        response = searchService.processSearch(query, siteUrl, offset, limit, qParams.get("cursor"));
         timeCounter.printStats();
         return new ResponseEntity<>(response.toJson(), httpHeaders, HttpStatus.OK);
     }
+
+    /**
+     * Разбор числового параметра запроса
+     * @param value значение параметра, null если параметр не задан
+     * @param defaultValue значение по умолчанию
+     * @param maxValue максимальное допустимое значение
+     * @return значение параметра, -1 если значение не число, отрицательное или больше максимального
+     */
+    private static int parseParam(String value, int defaultValue, int maxValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            int result = Integer.parseInt(value.trim());
+            return result <= maxValue ? result : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
 }
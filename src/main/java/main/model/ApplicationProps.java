@@ -17,4 +17,65 @@ public class ApplicationProps {
     private List<Map<String, String>> sites;
     private List<Map<String, String>> fields;
     private String userAgent;
+    private CrawlerProps crawler = new CrawlerProps();
+    private IndexingProps indexing = new IndexingProps();
+    private SearchProps search = new SearchProps();
+
+    /**
+     * Настройки обхода страниц сайтов
+     */
+    @Data
+    public static class CrawlerProps {
+        // количество потоков, выдающих страницы на загрузку, общее для всех сайтов
+        private int workers = 2;
+        // минимальный интервал между загрузками страниц одного хоста по умолчанию, мс
+        private long crawlDelay = 500;
+        // максимальное количество адресов страниц сайта в очереди в памяти, остальные записываются во временный файл
+        private int queueCapacity = 10000;
+        // способ загрузки страниц: async - неблокирующий HttpClient, jsoup - блокирующий Jsoup
+        private String fetcher = "async";
+        // максимальное количество одновременно загружаемых и обрабатываемых страниц
+        private int maxInFlight = 256;
+        // количество потоков разбора и индексации загруженных страниц
+        private int processingThreads = Runtime.getRuntime().availableProcessors();
+        // максимальное время ожидания ответа при загрузке страницы, мс
+        private int timeout = 30000;
+        // максимальный размер загружаемой страницы, байт, страницы большего размера не индексируются
+        private int maxPageSize = 5 * 1024 * 1024;
+    }
+
+    /**
+     * Настройки записи проиндексированных страниц в базу
+     */
+    @Data
+    public static class IndexingProps {
+        // максимальное количество страниц в одном пакете записи
+        private int batchSize = 50;
+        // максимальный размер очереди страниц, ожидающих записи
+        private int queueCapacity = 200;
+        // максимальное время ожидания заполнения пакета, мс
+        private long flushInterval = 200;
+        // способ сжатия контента страниц в базе: none, deflate или gzip
+        private String contentCodec = "deflate";
+        // максимальное количество слов в кеше исходных форм слов
+        private int lemmaCacheSize = 50000;
+        // количество строк в одном пакете запросов JDBC при записи индексов и лемм
+        private int jdbcBatchSize = 1000;
+    }
+
+    /**
+     * Настройки обработки поисковых запросов
+     */
+    @Data
+    public static class SearchProps {
+        // максимальный суммарный размер результатов в кеше результатов поиска, байт
+        private long cacheMaxBytes = 64 * 1024 * 1024;
+        // количество потоков построения фрагментов текста для результатов поиска
+        private int snippetThreads = Runtime.getRuntime().availableProcessors();
+        // максимальный размер очереди задач построения фрагментов текста
+        private int snippetQueueCapacity = 1000;
+        // максимальное время построения фрагментов текста для одного запроса, мс,
+        // по истечении результаты без готовых фрагментов выдаются без них
+        private long snippetTimeout = 2000;
+    }
 }
@@ -10,10 +10,11 @@ import javax.persistence.*;
  */
 @Data
 @Entity
-@Table(name = "`index`")
+@Table(name = "`index`", uniqueConstraints = @UniqueConstraint(name = "page_lemma",
+        columnNames = {"page_id", "lemma_id"}))
 public class Index {
+    // идентификатор выдается сервисом индексов при записи пакетом запросов JDBC, генератор Hibernate не используется
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
     private int id;
     // идентификатор страницы
     @Column(name = "page_id")
@@ -30,73 +30,106 @@ public interface IndexRepository extends CrudRepository<Index, Integer> {
     Iterable<Index> findByLemmaId(int lemmaId);
 
     /**
-     * Поиск списка индексов
+     * Удаление всех индексов для страниц
      * @param pageIds список идентификаторов страниц
-     * @return список индексов
      */
-    Iterable<Index> findByPageIdIn(Set<Integer> pageIds);
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM `index` WHERE page_id in (:pageIds)", nativeQuery = true)
+    void deleteByPageIds(@Param("pageIds") Set<Integer> pageIds);
 
     /**
-     * Поиск уникальных идентификаторов страниц, которые соответствуют лемме
-     * @param lemmaId идентификатор леммы
-     * @return список идентификаторов страниц
+     * Удаление всех индексов
      */
-    @Query(value = "select distinct page_id \n" +
-            "from `index`\n" +
-            "where lemma_id = :lemmaId", nativeQuery = true)
-    Set<Integer> findPageIdsForLemma(@Param("lemmaId") Integer lemmaId);
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM `index`", nativeQuery = true)
+    void deleteAllIndexes();
 
     /**
-     * Поиск уникальных идентификаторов страниц, которые соответствуют лемме и страницам
-     * @param lemmaId идентификатор леммы
-     * @param pageIds идентификаторы страниц
-     * @return список идентификаторов страниц
+     * Постраничное чтение таблицы индексов по возрастанию идентификатора,
+     * используется для загрузки обратного индекса в память
+     * @param lastId идентификатор последнего прочитанного индекса
+     * @param rowsLimit максимальное количество строк
+     * @return список идентификаторов индексов, лемм, страниц и рангов
      */
-    @Query(value = "select distinct page_id \n" +
+    @Query(value = "select id, lemma_id, page_id, `rank`\n" +
             "from `index`\n" +
-            "where lemma_id = :lemmaId\n" +
-            "and page_id in (:pageIds)", nativeQuery = true)
-    Set<Integer> findPageIdsForLemmaAndPages(@Param("lemmaId") Integer lemmaId, @Param("pageIds") Set<Integer> pageIds);
+            "where id > :lastId\n" +
+            "order by id\n" +
+            "limit :rowsLimit", nativeQuery = true)
+    ArrayList<Tuple> getIndexesAfterId(@Param("lastId") int lastId, @Param("rowsLimit") int rowsLimit);
 
     /**
-     * Удаление всех индексов для страниц
-     * @param pageIds список идентификаторов страниц
+     * @return количество столбцов уникального ключа page_lemma (page_id, lemma_id), 0 если ключа нет
+     */
+    @Query(value = "SELECT COUNT(*) FROM information_schema.statistics\n" +
+            "WHERE table_schema = DATABASE() AND table_name = 'index'\n" +
+            "AND index_name = 'page_lemma' AND non_unique = 0", nativeQuery = true)
+    int getUniqueKeyColumnsCount();
+
+    /**
+     * Удаление повторяющихся индексов страницы и леммы, остается индекс с наибольшим идентификатором
+     * @return количество удаленных индексов
      */
     @Modifying
     @Transactional
-    @Query(value = "DELETE FROM `index` WHERE page_id in (:pageIds)", nativeQuery = true)
-    void deleteByPageIds(@Param("pageIds") Set<Integer> pageIds);
+    @Query(value = "DELETE i1 FROM `index` AS i1\n" +
+            "INNER JOIN `index` AS i2\n" +
+            "ON i1.page_id = i2.page_id AND i1.lemma_id = i2.lemma_id AND i1.id < i2.id", nativeQuery = true)
+    int deleteDuplicates();
 
     /**
-     * Удаление всех индексов
+     * Создание уникального ключа page_lemma (page_id, lemma_id)
      */
     @Modifying
     @Transactional
-    @Query(value = "DELETE FROM `index`", nativeQuery = true)
-    void deleteAllIndexes();
+    @Query(value = "ALTER TABLE `index` ADD UNIQUE KEY page_lemma (page_id, lemma_id)", nativeQuery = true)
+    void addUniqueKey();
 
     /**
-     * Получение списка идентификаторов лемм и страниц,
-     * отсортированных по параметру frequency леммы.
-     * <p>Вспомогательный метод для обработки поисковых запросов
-     * @param lemmaNames список имен лемм
-     * @return список идентификаторов лемм и страниц
+     * @return максимальный идентификатор индекса, 0 если таблица пуста
      */
-    @Query(value = "select it.lemma_id, it.page_id\n" +
-            "from `index` as it\n" +
-            "inner join lemma as lt\n" +
-            "on it.lemma_id = lt.id\n" +
-            "where lt.lemma in (:lemmaNames)\n" +
-            "order by lt.frequency asc, it.lemma_id", nativeQuery = true)
-    ArrayList<Tuple> getLemmaIdsAndPageIdsSortedByFrequency(@Param("lemmaNames") Set<String> lemmaNames);
+    @Query(value = "SELECT COALESCE(MAX(id), 0) FROM `index`", nativeQuery = true)
+    int getMaxId();
 
     /**
-     * Поиск уникальных идентификаторов лемм, которые были найдены на страницах
-     * @param pageIds идентификаторы страниц
-     * @return список идентификаторов лемм
+     * Перенос индексов на другую лемму, индексы страниц, у которых уже есть индекс этой леммы, не переносятся
+     * @param fromLemmaId идентификатор исходной леммы
+     * @param toLemmaId идентификатор леммы, на которую переносятся индексы
      */
-    @Query(value = "select distinct lemma_id \n" +
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE IGNORE `index` SET lemma_id = :toLemmaId WHERE lemma_id = :fromLemmaId", nativeQuery = true)
+    void moveIndexesToLemma(@Param("fromLemmaId") int fromLemmaId, @Param("toLemmaId") int toLemmaId);
+
+    /**
+     * Удаление всех индексов леммы
+     * @param lemmaId идентификатор леммы
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM `index` WHERE lemma_id = :lemmaId", nativeQuery = true)
+    void deleteByLemmaId(@Param("lemmaId") int lemmaId);
+
+    /**
+     * Получение индексов страниц
+     * @param pageIds список идентификаторов страниц
+     * @return список идентификаторов страниц, лемм и рангов
+     */
+    @Query(value = "select page_id, lemma_id, `rank`\n" +
             "from `index`\n" +
             "where page_id in (:pageIds)", nativeQuery = true)
-    Set<Integer> getLemmaIdsForPageIds(@Param("pageIds") Set<Integer> pageIds);
+    ArrayList<Tuple> getRanksForPages(@Param("pageIds") Set<Integer> pageIds);
+
+    /**
+     * Получение количества страниц, на которых встречается каждая лемма
+     * @param pageIds список идентификаторов страниц
+     * @return список идентификаторов лемм и количества страниц
+     */
+    @Query(value = "select lemma_id, count(*)\n" +
+            "from `index`\n" +
+            "where page_id in (:pageIds)\n" +
+            "group by lemma_id", nativeQuery = true)
+    ArrayList<Tuple> getLemmaPagesCounts(@Param("pageIds") Set<Integer> pageIds);
 }
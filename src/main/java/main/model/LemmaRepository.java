@@ -6,6 +6,8 @@ import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.Tuple;
+import java.util.ArrayList;
 import java.util.Set;
 
 /**
@@ -26,19 +28,25 @@ public interface LemmaRepository extends CrudRepository<Lemma, Integer> {
      */
     Iterable<Lemma> findByIdIn(Set<Integer> lemmaIds);
 
-    /**
-     * Поиск списка лемм по имени (отсортирован по возрастанию частоты леммы)
-     * @param lemmas список имен лемм
-     * @return список лемм
-     */
-    Iterable<Lemma> findByLemmaInOrderByFrequencyAsc(Set<String> lemmas);
-
     /**
      * @return общее количество лемм в базе
      */
     @Query(value = "SELECT COUNT(*) FROM lemma", nativeQuery = true)
     long getNumLemmas();
 
+    /**
+     * Получение лемм с идентификатором больше заданного, используется для постраничной загрузки словаря лемм
+     * @param lastId идентификатор последней загруженной леммы
+     * @param rowsLimit максимальное количество строк
+     * @return список идентификаторов, имен и частот лемм
+     */
+    @Query(value = "select id, lemma, frequency\n" +
+            "from lemma\n" +
+            "where id > :lastId\n" +
+            "order by id\n" +
+            "limit :rowsLimit", nativeQuery = true)
+    ArrayList<Tuple> getLemmasAfterId(@Param("lastId") int lastId, @Param("rowsLimit") int rowsLimit);
+
     /**
      * Удаление лемм по идентификатору
      * @param lemmaIds список идентификаторов лемм
@@ -47,4 +55,31 @@ public interface LemmaRepository extends CrudRepository<Lemma, Integer> {
     @Transactional
     @Query(value = "DELETE FROM lemma WHERE id in (:lemmaIds)", nativeQuery = true)
     void deleteLemmasByIds(@Param("lemmaIds") Set<Integer> lemmaIds);
+
+    /**
+     * Изменение имени леммы
+     * @param lemmaId идентификатор леммы
+     * @param lemma новое имя леммы
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE lemma SET lemma = :lemma WHERE id = :lemmaId", nativeQuery = true)
+    void renameLemma(@Param("lemmaId") int lemmaId, @Param("lemma") String lemma);
+
+    /**
+     * Установка частоты леммы по количеству её индексов
+     * @param lemmaId идентификатор леммы
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE lemma SET frequency = (SELECT COUNT(*) FROM `index` WHERE lemma_id = :lemmaId) " +
+            "WHERE id = :lemmaId", nativeQuery = true)
+    void recountFrequency(@Param("lemmaId") int lemmaId);
+
+    /**
+     * @param lemmaId идентификатор леммы
+     * @return частота леммы
+     */
+    @Query(value = "SELECT frequency FROM lemma WHERE id = :lemmaId", nativeQuery = true)
+    int getFrequency(@Param("lemmaId") int lemmaId);
 }
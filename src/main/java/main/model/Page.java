@@ -26,6 +26,37 @@ public class Page {
     @Column(name="content", columnDefinition="MEDIUMTEXT")
     @Basic(fetch = FetchType.LAZY)
     private String content;
+    // сжатый контент страницы, заполняется вместо content
+    @Column(name="content_data", columnDefinition="MEDIUMBLOB")
+    @Basic(fetch = FetchType.LAZY)
+    private byte[] contentData;
+    // способ сжатия контента страницы
+    @Column(name="content_codec", length = 16)
+    private String contentCodec;
+    // кодировка контента страницы, null - UTF-8
+    @Column(name="content_charset", length = 32)
+    private String contentCharset;
+    // хеш загруженного контента страницы, при повторном обходе неизменившиеся страницы не индексируются
+    @Column(name="content_hash", length = 64)
+    private String contentHash;
+    // значение заголовка ETag, полученное при загрузке страницы
+    @Column(name="etag")
+    private String etag;
+    // значение заголовка Last-Modified, полученное при загрузке страницы
+    @Column(name="last_modified")
+    private String lastModified;
+    // пути к "дочерним" страницам, найденные на странице, по одному в строке,
+    // при повторном обходе используются для неизменившихся страниц без разбора HTML-кода
+    @Column(name="links", columnDefinition="MEDIUMTEXT")
+    @Basic(fetch = FetchType.LAZY)
+    private String links;
+    // заголовок страницы (текст элемента title), извлекается при индексации
+    @Column(name="title", columnDefinition="TEXT")
+    private String title;
+    // текст элемента body страницы, извлекается при индексации для формирования фрагментов в результатах поиска
+    @Column(name="text", columnDefinition="MEDIUMTEXT")
+    @Basic(fetch = FetchType.LAZY)
+    private String text;
     // ссылка на запись из таблицы site
     @ManyToOne(cascade = CascadeType.MERGE, fetch = FetchType.LAZY)
     private Site site;
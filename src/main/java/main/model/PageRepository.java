@@ -8,6 +8,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.Tuple;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -22,6 +23,14 @@ public interface PageRepository extends CrudRepository<Page, Integer> {
      */
     Page findByPathAndSiteId(String path, int siteId);
 
+    /**
+     * Поиск списка страниц сайта по путям
+     * @param siteId идентификатор сайта
+     * @param paths пути к страницам
+     * @return список страниц
+     */
+    Iterable<Page> findBySiteIdAndPathIn(int siteId, Set<String> paths);
+
     /**
      * Поиск списка страниц по идентификаторам
      * @param ids идентификаторы страниц
@@ -30,10 +39,30 @@ public interface PageRepository extends CrudRepository<Page, Integer> {
     Iterable<Page> findByIdIn(Set<Integer> ids);
 
     /**
-     * @return общее количество страниц в базе
+     * Получение данных страниц для результатов поиска без контента и ссылок
+     * @param ids идентификаторы страниц
+     * @return список идентификаторов, путей, заголовков и текстов страниц, идентификаторов, адресов и имен
+     * их сайтов и признаков того, что текст страницы нужно получить из сохраненного контента
      */
-    @Query(value = "SELECT COUNT(*) FROM page", nativeQuery = true)
-    long getNumPages();
+    @Query(value = "SELECT p.id, p.path, p.title, p.text, p.site_id, s.url, s.name,\n" +
+            "p.text IS NULL AND (p.content IS NOT NULL OR p.content_data IS NOT NULL)\n" +
+            "FROM page p JOIN site s ON s.id = p.site_id WHERE p.id IN (:ids)", nativeQuery = true)
+    ArrayList<Tuple> getSearchResultPages(@Param("ids") Set<Integer> ids);
+
+    /**
+     * Поиск списка страниц по идентификаторам вместе с сайтами страниц одним запросом
+     * @param ids идентификаторы страниц
+     * @return список страниц с загруженными сайтами
+     */
+    @Query(value = "SELECT p FROM Page p JOIN FETCH p.site WHERE p.id IN (:ids)")
+    List<Page> findWithSiteByIdIn(@Param("ids") Set<Integer> ids);
+
+    /**
+     * Получение сайтов всех страниц
+     * @return список идентификаторов страниц и идентификаторов их сайтов
+     */
+    @Query(value = "SELECT id, site_id FROM page", nativeQuery = true)
+    ArrayList<Tuple> getPageSites();
 
     /**
      * Поиск идентификаторов страниц для сайта
@@ -43,6 +72,46 @@ public interface PageRepository extends CrudRepository<Page, Integer> {
     @Query(value = "SELECT id FROM page WHERE site_id = :siteId", nativeQuery = true)
     Set<Integer> getPageIdsForSite(@Param("siteId") int siteId);
 
+    /**
+     * Получение идентификаторов и путей страниц сайта частями по возрастанию идентификатора
+     * @param siteId идентификатор сайта
+     * @param afterId идентификатор, после которого начинается часть
+     * @param limit максимальное количество страниц в части
+     * @return список идентификаторов и путей страниц
+     */
+    @Query(value = "SELECT id, path FROM page WHERE site_id = :siteId AND id > :afterId ORDER BY id LIMIT :limit",
+            nativeQuery = true)
+    ArrayList<Tuple> getPagePathsForSite(@Param("siteId") int siteId, @Param("afterId") int afterId,
+                                         @Param("limit") int limit);
+
+    /**
+     * Получение пути, хеша контента и валидаторов HTTP страницы
+     * @param pageId идентификатор страницы
+     * @return список из пути, хеша контента, значений ETag и Last-Modified страницы
+     * и признака наличия сохраненных ссылок, пустой если страница не найдена
+     */
+    @Query(value = "SELECT path, content_hash, etag, last_modified, links IS NOT NULL\n" +
+            "FROM page WHERE id = :pageId", nativeQuery = true)
+    ArrayList<Tuple> getPageValidators(@Param("pageId") int pageId);
+
+    /**
+     * Получение сохраненных ссылок страницы
+     * @param siteId идентификатор сайта
+     * @param path путь к странице
+     * @return пути к "дочерним" страницам по одному в строке, null если ссылки не сохранены
+     */
+    @Query(value = "SELECT links FROM page WHERE site_id = :siteId AND path = :path LIMIT 1", nativeQuery = true)
+    String getPageLinks(@Param("siteId") int siteId, @Param("path") String path);
+
+    /**
+     * Удаление страниц по идентификатору
+     * @param pageIds список идентификаторов страниц
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM page WHERE id in (:pageIds)", nativeQuery = true)
+    void deleteByIds(@Param("pageIds") Set<Integer> pageIds);
+
     /**
      * Удаление всех страниц для сайта
      * @param siteId идентификатор сайта
@@ -59,27 +128,4 @@ public interface PageRepository extends CrudRepository<Page, Integer> {
     @Transactional
     @Query(value = "DELETE FROM page", nativeQuery = true)
     void deleteAllPages();
-
-    /**
-     * Получение списка идентификаторов страниц,
-     * отсортированного по убыванию рассчитанного rank для каждой страницы.
-     * <p> Вспомогательный метод для обработки поисковых запросов
-     * @param pageIds список идентификаторов страниц, по которому будет проводиться поиск
-     * @param offset сдвиг от начала списка результатов
-     * @param limit количество результатов, которое необходимо вывести
-     * @return список идентификаторов страниц и рассчитанного rank для каждой страницы
-     */
-    @Query(value = "select it.page_id, sum(it.rank) as sum_rank\n" +
-            "from `index` as it\n" +
-            "inner join page as pt\n" +
-            "on it.page_id = pt.id\n" +
-            "inner join site as st\n" +
-            "on st.id = pt.site_id\n" +
-            "where page_id in (:pageIds)\n" +
-            "group by page_id\n" +
-            "order by sum_rank desc\n" +
-            "limit :offset, :rowLimit", nativeQuery = true)
-    ArrayList<Tuple> searchPagesForIds(@Param("pageIds") Set<Integer> pageIds,
-                                       @Param("offset") Integer offset,
-                                       @Param("rowLimit") Integer limit);
 }
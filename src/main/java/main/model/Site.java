@@ -4,7 +4,6 @@ import lombok.Data;
 
 import javax.persistence.*;
 import java.time.LocalDateTime;
-import java.util.HashSet;
 
 /**
  * класс для работы с данными из одноименной таблицы в БД,
@@ -39,29 +38,4 @@ public class Site {
     public Site() {
         statusTime = LocalDateTime.now();
     }
-
-    /**
-     * вспомогательный параметр для индексации,
-     * <p> хранит список адресов страниц сайта
-     * <p> не сохраняется в БД
-     */
-    @Transient
-    private HashSet<String> allPages = new HashSet<>();
-
-    /**
-     * @return список адресов страниц сайта
-     */
-    @Transient
-    public HashSet<String> getAllPages() {
-        return allPages;
-    }
-
-    /**
-     * Добавление адреса страницы в список адресов страниц сайта
-     * @param pagePath адрес страницы
-     */
-    @Transient
-    public void addPage(String pagePath) {
-        allPages.add(pagePath);
-    }
 }
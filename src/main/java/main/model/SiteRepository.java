@@ -6,7 +6,6 @@ import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 
-import javax.persistence.Tuple;
 import java.util.Set;
 
 /**
@@ -27,26 +26,6 @@ public interface SiteRepository extends CrudRepository<Site, Integer> {
      */
     Iterable<Site> findByUrlIn(Set<String> urls);
 
-    /**
-     * @return общее количество сайтов в таблице
-     */
-    @Query(value = "SELECT COUNT(*) FROM site", nativeQuery = true)
-    int getNumSites();
-
-    /**
-     * Получение статистики по всем сайтам
-     * @return список кортежей с 3 параметрами:
-     * <p> site_id - идентификатор сайта
-     * <p> lemmas - количество найденных лемм на страницах сайта
-     * <p> pages - количество проиндексированных страниц сайта
-     */
-    @Query(value = "select t2.site_id, count(DISTINCT t1.lemma_id) as lemmas, count(DISTINCT t1.page_id) as pages\n" +
-            "from `index` t1\n" +
-            "inner join page t2\n" +
-            "on t1.page_id = t2.id\n" +
-            "group by t2.site_id", nativeQuery = true)
-    Iterable<Tuple> getSitesStats();
-
     /**
      * Удаление одного сайта
      * @param siteId идентификатор сайта
@@ -1,47 +1,40 @@
 package main.services;
 
-import main.model.Lemma;
-import org.springframework.data.repository.query.Param;
+import main.model.Index;
 
-import javax.persistence.Tuple;
 import java.util.*;
 
 public interface IndexService {
     /**
-     * Обновляет индексы в таблице
-     * @param lemmas список лемм с данными для обновления
-     * @param pageId идентификатор вебстраницы
+     * Сохранение/обновление индексов в таблице пакетами запросов JDBC,
+     * существующий индекс страницы и леммы обновляется по уникальному ключу (page_id, lemma_id)
+     * @param indexes список индексов, идентификаторы новых индексов не используются
      */
-    void updateIndexes(ArrayList<Lemma> lemmas, int pageId);
+    void saveIndexes(Collection<Index> indexes);
 
     /**
-     * Установка одинаковых значений 'rank' для идентичных лемм,
-     * которые записываются в разные строки таблицы index,
-     * например слова 'темный' и 'тёмный' будут одинаковыми при запросах в mysql
-     * @param lemmaIds идентификаторы лемм
-     * @param pageId идентификатор страницы
+     * Удаление индексов из таблицы пакетами запросов JDBC
+     * @param indexes список индексов, удаляются строки с такими же страницей и леммой
      */
-    void alignLemmasRank(HashSet<Integer> lemmaIds, int pageId);
+    void deleteIndexes(Collection<Index> indexes);
 
     /**
-     * Удаление из таблицы индексов для указанных страниц
+     * Получение рангов лемм на страницах
      * @param pageIds список идентификаторов страниц
+     * @return ранги лемм: идентификатор страницы -> идентификатор леммы -> ранг
      */
-    void deleteIndexesForPages(Set<Integer> pageIds);
+    HashMap<Integer, HashMap<Integer, Float>> getRanksForPages(Set<Integer> pageIds);
 
     /**
-     * Получение списка идентификаторов лемм и страниц,
-     * отсортированных по параметру frequency леммы.
-     * <p>Вспомогательный метод для обработки поисковых запросов
-     * @param lemmaNames список имен лемм
-     * @return список идентификаторов лемм и страниц
+     * Получение количества страниц, на которых встречается каждая лемма
+     * @param pageIds список идентификаторов страниц
+     * @return идентификатор леммы -> количество страниц
      */
-    ArrayList<Tuple> getLemmaIdsAndPageIdsSortedByFrequency(Set<String> lemmaNames);
+    HashMap<Integer, Integer> getLemmaPagesCounts(Set<Integer> pageIds);
 
     /**
-     * Получение списка идентификаторов лемм, которые были найдены на указанных страницах
+     * Удаление из таблицы индексов для указанных страниц
      * @param pageIds список идентификаторов страниц
-     * @return список идентификаторов лемм
      */
-    Set<Integer> getLemmaIdsForPageIds(Set<Integer> pageIds);
+    void deleteIndexesForPages(Set<Integer> pageIds);
 }
@@ -1,79 +1,129 @@
 package main.services;
 
+import main.model.ApplicationProps;
 import main.model.Index;
 import main.model.IndexRepository;
-import main.model.Lemma;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.repository.query.Param;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
 import javax.persistence.Tuple;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Сервис для работы с данными из таблицы index
+ * Сервис для работы с данными из таблицы index.
+ * <p> Индексы записываются пакетами запросов JDBC 'INSERT ... ON DUPLICATE KEY UPDATE',
+ * идентификаторы новых строк выдаются сервисом, поэтому для каждой строки не нужен
+ * запрос к генератору идентификаторов Hibernate и предварительное чтение существующих строк.
+ * <p> Запись основана на уникальном ключе (page_id, lemma_id), поэтому при запуске ключ создается,
+ * если его нет, а повторяющиеся индексы, записанные до его появления, удаляются
  */
 @Service
+@EnableConfigurationProperties(value = ApplicationProps.class)
 public class IndexServiceImpl implements IndexService {
+    // запрос записи индекса, существующая строка страницы и леммы обновляется
+    private static final String UPSERT_INDEX_SQL = "INSERT INTO `index` (id, page_id, lemma_id, `rank`) " +
+            "VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE `rank` = VALUES(`rank`)";
+
     // обьект для работа с таблицей в БД
     @Autowired
     private IndexRepository indexRepository;
+    // обьект для пакетной записи индексов
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    // настройки приложения из application.yml
+    @Autowired
+    private ApplicationProps appProperties;
+    // последний выданный идентификатор индекса
+    private final AtomicInteger lastId = new AtomicInteger();
+
+    /**
+     * метод инициализации сервиса, вызывается после коннекта к БД до начала работы контроллеров,
+     * создает уникальный ключ индексов страницы и леммы и определяет последний идентификатор индекса в таблице
+     */
+    @PostConstruct
+    public void initialize() {
+        ensureUniqueKey();
+        lastId.set(indexRepository.getMaxId());
+    }
 
-    public void updateIndexes(ArrayList<Lemma> lemmas, int pageId) {
-        HashMap<Integer, Lemma> lemmasMap = new HashMap<>();
-        lemmas.forEach(l -> lemmasMap.put(l.getId(), l));
-        Iterable<Index> indexes = indexRepository.findByPageIdAndLemmaIdIn(pageId, lemmasMap.keySet());
-        ArrayList<Index> updatedIndexes = new ArrayList<>();
-        for(Index index : indexes) {
-            Lemma lemma = lemmasMap.get(index.getLemmaId());
-            if (lemma != null) {
-                index.setRank(lemma.getRank());
-                lemmasMap.remove(index.getLemmaId());
-                updatedIndexes.add(index);
-            }
+    /**
+     * Создание уникального ключа page_lemma, если его нет: сначала удаляются повторяющиеся индексы.
+     * Без ключа запись индексов добавляла бы повторяющиеся строки, поэтому при ошибке запуск прерывается
+     */
+    private void ensureUniqueKey() {
+        if (indexRepository.getUniqueKeyColumnsCount() == 2) {
+            return;
         }
-        for(Map.Entry<Integer, Lemma> entry : lemmasMap.entrySet()) {
-            Index index = new Index(pageId, entry.getKey(), entry.getValue().getRank());
-            updatedIndexes.add(index);
+        try {
+            long start = System.currentTimeMillis();
+            int deleted = indexRepository.deleteDuplicates();
+            indexRepository.addUniqueKey();
+            System.out.println("Создан уникальный ключ page_lemma таблицы index за " +
+                    (System.currentTimeMillis() - start) + "ms, удалено повторяющихся индексов: " + deleted);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Не удалось создать уникальный ключ page_lemma таблицы index", e);
         }
-        synchronized (this) {
-            indexRepository.saveAll(updatedIndexes);
+        if (indexRepository.getUniqueKeyColumnsCount() != 2) {
+            throw new IllegalStateException("Уникальный ключ page_lemma таблицы index не создан");
         }
     }
 
-    public void alignLemmasRank(HashSet<Integer> lemmaIds, int pageId) {
-        Iterable<Index> indexes = indexRepository.findByPageIdAndLemmaIdIn(pageId, lemmaIds);
-        float maxRank = 0.0f;
-        for(Index index : indexes) {
-            maxRank = Math.max(index.getRank(), maxRank);
-        }
-        for(Index index : indexes) {
-            index.setRank(maxRank);
-        }
-        synchronized (this) {
-            indexRepository.saveAll(indexes);
+    public void saveIndexes(Collection<Index> indexes) {
+        if (indexes.isEmpty()) {
+            return;
         }
+        int batchSize = Math.max(1, appProperties.getIndexing().getJdbcBatchSize());
+        jdbcTemplate.batchUpdate(UPSERT_INDEX_SQL, indexes, batchSize, (statement, index) -> {
+            // при обновлении существующей строки выданный идентификатор не используется
+            statement.setInt(1, lastId.incrementAndGet());
+            statement.setInt(2, index.getPageId());
+            statement.setInt(3, index.getLemmaId());
+            statement.setFloat(4, index.getRank());
+        });
     }
 
-    public void deleteIndexesForPages(Set<Integer> pageIds) {
-        if (!pageIds.isEmpty()) {
-            synchronized (this) {
-                indexRepository.deleteByPageIds(pageIds);
-            }
+    public void deleteIndexes(Collection<Index> indexes) {
+        if (indexes.isEmpty()) {
+            return;
         }
+        int batchSize = Math.max(1, appProperties.getIndexing().getJdbcBatchSize());
+        jdbcTemplate.batchUpdate("DELETE FROM `index` WHERE page_id = ? AND lemma_id = ?", indexes, batchSize,
+                (statement, index) -> {
+                    statement.setInt(1, index.getPageId());
+                    statement.setInt(2, index.getLemmaId());
+                });
     }
 
-    public ArrayList<Tuple> getLemmaIdsAndPageIdsSortedByFrequency(Set<String> lemmaNames) {
-        if (lemmaNames.isEmpty()) {
-            return new ArrayList<>();
+    public HashMap<Integer, HashMap<Integer, Float>> getRanksForPages(Set<Integer> pageIds) {
+        HashMap<Integer, HashMap<Integer, Float>> result = new HashMap<>();
+        if (pageIds.isEmpty()) {
+            return result;
+        }
+        for (Tuple row : indexRepository.getRanksForPages(pageIds)) {
+            result.computeIfAbsent(((Number) row.get(0)).intValue(), k -> new HashMap<>())
+                    .put(((Number) row.get(1)).intValue(), ((Number) row.get(2)).floatValue());
         }
-        return indexRepository.getLemmaIdsAndPageIdsSortedByFrequency(lemmaNames);
+        return result;
     }
 
-    public Set<Integer> getLemmaIdsForPageIds(Set<Integer> pageIds) {
+    public HashMap<Integer, Integer> getLemmaPagesCounts(Set<Integer> pageIds) {
+        HashMap<Integer, Integer> result = new HashMap<>();
         if (pageIds.isEmpty()) {
-            return new HashSet<>();
+            return result;
+        }
+        for (Tuple row : indexRepository.getLemmaPagesCounts(pageIds)) {
+            result.put(((Number) row.get(0)).intValue(), ((Number) row.get(1)).intValue());
+        }
+        return result;
+    }
+
+    public void deleteIndexesForPages(Set<Integer> pageIds) {
+        if (!pageIds.isEmpty()) {
+            indexRepository.deleteByPageIds(pageIds);
         }
-        return indexRepository.getLemmaIdsForPageIds(pageIds);
     }
 }
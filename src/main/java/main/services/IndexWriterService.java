@@ -0,0 +1,26 @@
+package main.services;
+
+import main.model.Site;
+import main.utils.bypass.BypassData;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+public interface IndexWriterService {
+    /**
+     * Постановка страницы в очередь записи в базу,
+     * если очередь заполнена - метод ждет освобождения места
+     * @param site обьект сайта
+     * @param data данные результатов сканирования страницы
+     * @return идентификатор сохраненной страницы после записи, -1 если страницу не удалось сохранить
+     */
+    CompletableFuture<Integer> submit(Site site, BypassData data);
+
+    /**
+     * Удаление страниц вместе с их индексами, частоты лемм уменьшаются на количество удаленных страниц,
+     * на которых встречается лемма, метод возвращает управление после удаления
+     * @param siteId идентификатор сайта, которому принадлежат страницы
+     * @param pageIds список идентификаторов страниц
+     */
+    void removePages(int siteId, Set<Integer> pageIds);
+}
@@ -0,0 +1,343 @@
+package main.services;
+
+import main.model.*;
+import main.utils.bypass.BypassData;
+import main.utils.bypass.PageLemmas;
+import main.utils.index.LemmaDictionary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сервис записи проиндексированных страниц в базу.
+ * <p> Потоки обработки страниц только ставят страницы в очередь ограниченного размера,
+ * отдельный поток записи собирает страницы в пакеты и сохраняет страницы, леммы и индексы
+ * всего пакета в одной транзакции, поэтому потоки обработки не ждут друг друга на блокировках
+ */
+@Service
+@EnableConfigurationProperties(value = ApplicationProps.class)
+public class IndexWriterServiceImpl implements IndexWriterService {
+    // количество страниц, удаляемых в одной транзакции
+    private static final int REMOVE_BATCH_SIZE = 1000;
+
+    // ссылка на обьект для доступа к сервису вебстраниц
+    @Autowired
+    private PageService pageService;
+    // ссылка на обьект для доступа к сервису лемм
+    @Autowired
+    private LemmaService lemmaService;
+    // ссылка на обьект для доступа к сервису индексов
+    @Autowired
+    private IndexService indexService;
+    // ссылка на обьект для доступа к обратному индексу в памяти
+    @Autowired
+    private SearchIndexService searchIndexService;
+    // ссылка на обьект для доступа к сервису статистики сайтов
+    @Autowired
+    private SiteStatsService siteStatsService;
+    // обьект для управления транзакциями
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    // настройки приложения из application.yml
+    @Autowired
+    private ApplicationProps appProperties;
+    // очередь страниц, ожидающих записи
+    private BlockingQueue<PageWriteTask> queue;
+    // обьект для выполнения записи пакета в одной транзакции
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * метод инициализации сервиса, вызывается после коннекта к БД до начала работы контроллеров,
+     * запускает поток записи страниц
+     */
+    @PostConstruct
+    public void initialize() {
+        queue = new ArrayBlockingQueue<>(Math.max(1, appProperties.getIndexing().getQueueCapacity()));
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        Thread writerThread = new Thread(this::writeLoop, "index-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    public CompletableFuture<Integer> submit(Site site, BypassData data) {
+        PageWriteTask task = new PageWriteTask(site, data);
+        try {
+            queue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            task.future.complete(-1);
+        }
+        return task.future;
+    }
+
+    public void removePages(int siteId, Set<Integer> pageIds) {
+        ArrayList<Integer> ids = new ArrayList<>(pageIds);
+        for (int from = 0; from < ids.size(); from += REMOVE_BATCH_SIZE) {
+            HashSet<Integer> chunk = new HashSet<>(ids.subList(from, Math.min(ids.size(), from + REMOVE_BATCH_SIZE)));
+            LemmaDictionary dictionary = lemmaService.getDictionary();
+            LemmaDictionary.Changes changes;
+            // количество удаляемых страниц для каждой леммы
+            HashMap<Integer, Integer> lemmaPagesCounts = new HashMap<>();
+            synchronized (dictionary) {
+                changes = transactionTemplate.execute(status -> {
+                    LemmaDictionary.Changes chunkChanges = dictionary.newChanges();
+                    lemmaPagesCounts.putAll(indexService.getLemmaPagesCounts(chunk));
+                    lemmaPagesCounts.forEach((lemmaId, count) -> chunkChanges.addFrequency(lemmaId, -count));
+                    lemmaService.saveChanges(chunkChanges);
+                    indexService.deleteIndexesForPages(chunk);
+                    pageService.deletePages(chunk);
+                    return chunkChanges;
+                });
+                dictionary.apply(changes);
+            }
+            searchIndexService.removePages(siteId, chunk, changes.getFrequencyDeltas().keySet());
+            siteStatsService.pagesRemoved(siteId, chunk.size(), lemmaPagesCounts);
+        }
+    }
+
+    /**
+     * Цикл потока записи: собирает страницы из очереди в пакеты и записывает их в базу
+     */
+    private void writeLoop() {
+        ApplicationProps.IndexingProps props = appProperties.getIndexing();
+        int batchSize = Math.max(1, props.getBatchSize());
+        ArrayList<PageWriteTask> batch = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                batch.add(queue.take());
+                long flushTime = System.currentTimeMillis() + props.getFlushInterval();
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long waitMs = flushTime - System.currentTimeMillis();
+                    if (batch.size() >= batchSize || waitMs <= 0) {
+                        break;
+                    }
+                    PageWriteTask task = queue.poll(waitMs, TimeUnit.MILLISECONDS);
+                    if (task == null) {
+                        break;
+                    }
+                    batch.add(task);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                writeBatch(batch);
+            } catch (Exception ex) {
+                // ошибка после записи в базу не должна останавливать поток записи
+                System.err.println("Ошибка обработки пакета из " + batch.size() + " страниц: " + ex);
+                batch.forEach(task -> task.future.complete(-1));
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Запись пакета страниц, если пакет не удалось записать целиком - страницы записываются по одной
+     * @param batch пакет страниц
+     */
+    private void writeBatch(List<PageWriteTask> batch) {
+        long start = System.currentTimeMillis();
+        LemmaDictionary dictionary = lemmaService.getDictionary();
+        // словарь изменяется только вместе с записью изменений в базу
+        synchronized (dictionary) {
+            LemmaDictionary.Changes changes;
+            try {
+                changes = transactionTemplate.execute(status -> flush(batch));
+            } catch (Exception ex) {
+                if (batch.size() > 1) {
+                    for (PageWriteTask task : batch) {
+                        writeBatch(Collections.singletonList(task));
+                    }
+                    return;
+                }
+                PageWriteTask task = batch.get(0);
+                System.err.println("Ошибка сохранения страницы:" + ex + ", pageInfo: " +
+                        task.site.getUrl() + task.data.getPath());
+                task.future.complete(-1);
+                return;
+            }
+            if (changes != null) {
+                dictionary.apply(changes);
+            }
+        }
+        int indexesCount = 0;
+        for (PageWriteTask task : batch) {
+            indexesCount += task.ranks.size() + task.removedLemmaIds.size();
+            // обратный индекс обновляется только после успешной записи в базу
+            if (!task.removedLemmaIds.isEmpty()) {
+                searchIndexService.removePages(task.site.getId(), Collections.singleton(task.page.getId()),
+                        task.removedLemmaIds);
+            }
+            searchIndexService.addPage(task.site.getId(), task.page.getId(), task.ranks);
+            siteStatsService.pageSaved(task.site.getId(), task.created, task.addedLemmaIds, task.removedLemmaIds);
+            task.ranks = null;
+            task.addedLemmaIds = null;
+            task.removedLemmaIds = null;
+            // освобождаем память до завершения обработки страницы
+            task.data.setContentData(null);
+            task.data.setText(null);
+            task.data.setLinks(null);
+            task.data.setLemmas(null);
+            task.future.complete(task.page.getId());
+        }
+        if (batch.size() > 1) {
+            System.out.println("Записан пакет из " + batch.size() + " страниц и " + indexesCount +
+                    " индексов за " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+
+    /**
+     * Сохранение страниц, лемм и индексов пакета.
+     * <p> Для обновляемых страниц записываются только изменения: индексы новых лемм и лемм с изменившимся рангом,
+     * удаление индексов лемм, которых больше нет на странице, частоты лемм меняются только для появившихся
+     * и пропавших лемм. Идентификаторы лемм определяются по словарю в памяти без запросов к базе
+     * @param batch пакет страниц
+     * @return изменения словаря лемм, которые необходимо применить после успешной записи
+     */
+    private LemmaDictionary.Changes flush(List<PageWriteTask> batch) {
+        savePages(batch);
+        HashSet<Integer> updatedPageIds = new HashSet<>();
+        batch.stream().filter(task -> !task.created).forEach(task -> updatedPageIds.add(task.page.getId()));
+        // ранги лемм на страницах: сохраненные в базе, затем после обработки каждой страницы пакета
+        HashMap<Integer, HashMap<Integer, Float>> pagesRanks = indexService.getRanksForPages(updatedPageIds);
+        // изменения индексов: идентификатор страницы -> идентификатор леммы -> ранг, null если индекс удаляется
+        HashMap<Integer, HashMap<Integer, Float>> indexChanges = new HashMap<>();
+        LemmaDictionary.Changes changes = lemmaService.getDictionary().newChanges();
+        HashMap<String, Integer> lemmaIds = new HashMap<>();
+        for (PageWriteTask task : batch) {
+            int pageId = task.page.getId();
+            HashMap<Integer, Float> oldRanks = pagesRanks.getOrDefault(pageId, new HashMap<>());
+            HashMap<Integer, Float> newRanks = new HashMap<>();
+            HashMap<Integer, Float> pageChanges = indexChanges.computeIfAbsent(pageId, k -> new HashMap<>());
+            task.ranks = new HashMap<>();
+            task.addedLemmaIds = new ArrayList<>();
+            task.removedLemmaIds = new HashSet<>();
+            PageLemmas pageLemmas = task.data.getLemmas();
+            for (int i = 0; pageLemmas != null && i < pageLemmas.size(); i++) {
+                int lemmaId = lemmaIds.computeIfAbsent(pageLemmas.getLemma(i), changes::resolve);
+                float rank = pageLemmas.getRank(i);
+                newRanks.put(lemmaId, rank);
+                Float oldRank = oldRanks.get(lemmaId);
+                if (oldRank == null) {
+                    changes.addFrequency(lemmaId, 1);
+                    task.addedLemmaIds.add(lemmaId);
+                }
+                if (oldRank == null || oldRank != rank) {
+                    task.ranks.put(lemmaId, rank);
+                    pageChanges.put(lemmaId, rank);
+                }
+            }
+            for (Integer lemmaId : oldRanks.keySet()) {
+                if (!newRanks.containsKey(lemmaId)) {
+                    changes.addFrequency(lemmaId, -1);
+                    task.removedLemmaIds.add(lemmaId);
+                    pageChanges.put(lemmaId, null);
+                }
+            }
+            pagesRanks.put(pageId, newRanks);
+        }
+        if (!changes.isEmpty()) {
+            lemmaService.saveChanges(changes);
+        }
+        saveIndexes(indexChanges);
+        return changes;
+    }
+
+    /**
+     * Сохранение/обновление страниц пакета
+     * @param batch пакет страниц
+     */
+    private void savePages(List<PageWriteTask> batch) {
+        HashMap<Integer, HashSet<String>> sitePaths = new HashMap<>();
+        for (PageWriteTask task : batch) {
+            sitePaths.computeIfAbsent(task.site.getId(), k -> new HashSet<>()).add(task.data.getPath());
+        }
+        HashMap<Integer, HashMap<String, Page>> sitePages = new HashMap<>();
+        sitePaths.forEach((siteId, paths) -> sitePages.put(siteId, pageService.getPagesByPath(siteId, paths)));
+        LinkedHashSet<Page> pages = new LinkedHashSet<>();
+        for (PageWriteTask task : batch) {
+            HashMap<String, Page> savedPages = sitePages.get(task.site.getId());
+            Page page = savedPages.get(task.data.getPath());
+            task.created = page == null;
+            if (page == null) {
+                page = new Page();
+                page.setPath(task.data.getPath());
+                page.setSite(task.site);
+                savedPages.put(page.getPath(), page);
+                System.out.println("Добавляем страницу " + task.site.getUrl() + page.getPath() + " в базу данных");
+            } else {
+                System.out.println("Обновляем страницу " + task.site.getUrl() + page.getPath() + " в базе данных");
+            }
+            page.setCode(task.data.getStatusCode());
+            page.setContent(null);
+            page.setContentData(task.data.getContentData());
+            page.setContentCharset(task.data.getContentCharset());
+            page.setContentCodec(task.data.getContentCodec());
+            page.setContentHash(task.data.getContentHash());
+            page.setEtag(task.data.getEtag());
+            page.setLastModified(task.data.getLastModified());
+            page.setLinks(task.data.getLinks());
+            page.setTitle(task.data.getTitle());
+            page.setText(task.data.getText());
+            task.page = page;
+            pages.add(page);
+        }
+        pageService.savePages(pages);
+    }
+
+    /**
+     * Сохранение/удаление индексов страниц пакета
+     * @param indexChanges изменения индексов: идентификатор страницы -> идентификатор леммы -> ранг,
+     *                     null если индекс удаляется
+     */
+    private void saveIndexes(Map<Integer, HashMap<Integer, Float>> indexChanges) {
+        ArrayList<Index> indexesToSave = new ArrayList<>();
+        ArrayList<Index> indexesToDelete = new ArrayList<>();
+        indexChanges.forEach((pageId, pageChanges) -> pageChanges.forEach((lemmaId, rank) -> {
+            if (rank == null) {
+                indexesToDelete.add(new Index(pageId, lemmaId, 0.0f));
+            } else {
+                indexesToSave.add(new Index(pageId, lemmaId, rank));
+            }
+        }));
+        indexService.deleteIndexes(indexesToDelete);
+        indexService.saveIndexes(indexesToSave);
+    }
+
+    /**
+     * Страница в очереди записи
+     */
+    private static class PageWriteTask {
+        // обьект сайта
+        private final Site site;
+        // данные результатов сканирования страницы
+        private final BypassData data;
+        // результат записи, идентификатор сохраненной страницы
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+        // сохраненная страница
+        private Page page;
+        // true если страница добавлена в базу при записи этого пакета
+        private boolean created;
+        // новые и изменившиеся ранги лемм на странице для обратного индекса: идентификатор леммы -> ранг
+        private HashMap<Integer, Float> ranks = new HashMap<>();
+        // идентификаторы лемм, появившихся на странице
+        private ArrayList<Integer> addedLemmaIds = new ArrayList<>();
+        // идентификаторы лемм, которых больше нет на странице
+        private HashSet<Integer> removedLemmaIds = new HashSet<>();
+
+        private PageWriteTask(Site site, BypassData data) {
+            this.site = site;
+            this.data = data;
+        }
+    }
+}
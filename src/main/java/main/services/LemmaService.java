@@ -1,20 +1,43 @@
 package main.services;
 
-import main.model.Lemma;
+import com.github.cliftonlabs.json_simple.JsonObject;
+import main.utils.bypass.PageLemmas;
+import main.utils.index.LemmaDictionary;
 import org.jsoup.nodes.Document;
-import org.springframework.data.jpa.repository.Modifying;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.transaction.annotation.Transactional;
+import org.jsoup.select.NodeVisitor;
 
 import java.util.*;
+import java.util.function.IntUnaryOperator;
 
 public interface LemmaService {
     /**
      * Получение лемм из обьекта содержащего иходных код страницы
      * @param document обьект содержащий иходных код страницы
-     * @param pageId идентификатор страницы
+     * @param listener обработчик узлов документа, вызываемый в том же обходе DOM, может быть null
+     * @return леммы страницы и их ранги
      */
-    void processDocumentInPage(Document document, int pageId);
+    PageLemmas scanDocument(Document document, NodeVisitor listener);
+
+    /**
+     * Поиск идентификаторов лемм по имени в словаре лемм
+     * @param lemmas список имен лемм в канонической форме
+     * @return список идентификаторов лемм
+     */
+    ArrayList<Integer> findLemmaIds(Set<String> lemmas);
+
+    /**
+     * Словарь лемм в памяти. Изменения словаря вместе с записью изменений в базу
+     * выполняются под монитором словаря
+     * @return словарь лемм
+     */
+    LemmaDictionary getDictionary();
+
+    /**
+     * Запись изменений словаря в таблицу пакетами, вызывается внутри транзакции записи страниц,
+     * к словарю изменения применяются после успешной записи
+     * @param changes новые леммы и изменения частоты лемм
+     */
+    void saveChanges(LemmaDictionary.Changes changes);
 
     /**
      * Поиск лемм из текста
@@ -24,13 +47,19 @@ public interface LemmaService {
     HashSet<String> findLemmaStringsInText(String text);
 
     /**
-     * @return количество лемм в таблице
+     * @return количество лемм в словаре
      */
     long getNumLemmas();
 
     /**
-     * Удаление или обновление лемм для удаляемых страниц
-     * @param lemmaIds список идентификаторов страниц
+     * @return статистика обращений к кешу исходных форм слов
+     */
+    JsonObject getCacheStats();
+
+    /**
+     * Исправление частот лемм по фактическому количеству страниц, вызывается после загрузки обратного индекса,
+     * леммы, которые не встречаются ни на одной странице, удаляются
+     * @param pagesCount функция получения количества страниц по идентификатору леммы
      */
-    void cleanUpLemmas(Set<Integer> lemmaIds);
+    void correctFrequencies(IntUnaryOperator pagesCount);
 }
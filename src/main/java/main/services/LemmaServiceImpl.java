@@ -1,67 +1,160 @@
 package main.services;
 
+import com.github.cliftonlabs.json_simple.JsonObject;
+import main.model.ApplicationProps;
 import main.model.Field;
-import main.model.Lemma;
+import main.model.IndexRepository;
 import main.model.LemmaRepository;
-import org.apache.lucene.morphology.LuceneMorphology;
-import org.apache.lucene.morphology.WrongCharaterException;
+import main.utils.bypass.PageLemmas;
+import main.utils.cache.LruCache;
+import main.utils.index.LemmaDictionary;
+import main.utils.morphology.LuceneWordAnalyzer;
+import main.utils.morphology.MorphologyRouter;
+import main.utils.morphology.PassthroughWordAnalyzer;
+import main.utils.morphology.WordAnalyzer;
+import main.utils.text.FieldTextExtractor;
+import main.utils.text.TermCounter;
+import main.utils.text.TextTokenizer;
 import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
 import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
 import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.jsoup.select.NodeVisitor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
+import javax.annotation.PostConstruct;
+import javax.persistence.Tuple;
 import java.util.*;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Сервис для работы с данными из таблицы lemma
  */
 @Service
+@EnableConfigurationProperties(value = ApplicationProps.class)
+@DependsOn("indexServiceImpl")
 public class LemmaServiceImpl implements LemmaService {
     // обьект для работы с таблицей в БД
     @Autowired
     private LemmaRepository lemmaRepository;
+    // обьект для объединения индексов повторяющихся лемм при загрузке словаря
+    @Autowired
+    private IndexRepository indexRepository;
+    // обьект для пакетной записи изменений словаря в таблицу
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
     // ссылка на обьект для доступа к сервису полей
     @Autowired
     private FieldService fieldService;
-    // ссылка на обьект для доступа к сервису индексов
+    // настройки приложения из application.yml
     @Autowired
-    private IndexService indexService;
-    // обьект из библиотеки лемматизации для получения лемм (исходных форм слов) на русском языке
-    private LuceneMorphology russianMorph;
-    // обьект из библиотеки лемматизации для получения лемм (исходных форм слов) на английском языке
-    private LuceneMorphology englishMorph;
-    // регулярное выражение для разбивки текста на слова
-    private static final String TEXT_SPLIT_REGEX = "( \\- )|[,.;:\"! ]";
-    // регулярное выражения для игнорирования служебных частей речи при получении лемм для слов
-    private static final String IGNORE_SERVICE_PARTS_REGEX = ".*(ПРЕДЛ|МЕЖД|СОЮЗ|МС|ЧАСТ|PREP|PART|CONJ|ARTICLE).*";
+    private ApplicationProps appProperties;
+    // словарь лемм в памяти
+    private final LemmaDictionary dictionary = new LemmaDictionary();
+    // кеш исходных форм слов: слово -> список исходных форм
+    private LruCache<String, List<String>> baseFormsCache;
+    // выбор анализатора слова по алфавиту
+    private MorphologyRouter morphologyRouter;
+    // извлечение текста полей страницы
+    private FieldTextExtractor fieldTextExtractor;
+    // веса полей по порядковым номерам полей в списке FieldService.getAllFields()
+    private float[] fieldWeights;
+    // обьекты для разбивки текста на слова, свои для каждого потока
+    private static final ThreadLocal<TextTokenizer> TOKENIZERS = ThreadLocal.withInitial(TextTokenizer::new);
+    // счетчики появлений лемм на странице, свои для каждого потока
+    private static final ThreadLocal<TermCounter> TERM_COUNTERS = ThreadLocal.withInitial(TermCounter::new);
+    // максимальная длина чисел и артикулов, которые индексируются без словаря
+    private static final int MAX_PASSTHROUGH_WORD_LENGTH = 32;
+    // количество строк, читаемых из таблицы за один запрос при загрузке словаря
+    private static final int LOAD_PAGE_SIZE = 10000;
+
+    /**
+     * метод инициализации сервиса, вызывается после коннекта к БД до начала работы контроллеров,
+     * загружает словарь лемм, создает кеш исходных форм слов, анализаторы слов для поддерживаемых алфавитов
+     * и обьект извлечения текста полей
+     */
+    @PostConstruct
+    public void initialize() {
+        loadDictionary();
+        baseFormsCache = new LruCache<>(appProperties.getIndexing().getLemmaCacheSize());
+        WordAnalyzer passthrough = new PassthroughWordAnalyzer(MAX_PASSTHROUGH_WORD_LENGTH);
+        morphologyRouter = new MorphologyRouter()
+                .register(TextTokenizer.Script.CYRILLIC, new LuceneWordAnalyzer(RussianLuceneMorphology::new))
+                .register(TextTokenizer.Script.LATIN, new LuceneWordAnalyzer(EnglishLuceneMorphology::new))
+                .register(TextTokenizer.Script.NUMBER, passthrough)
+                .register(TextTokenizer.Script.MIXED, passthrough);
+        ArrayList<Field> fields = fieldService.getAllFields();
+        fieldTextExtractor = new FieldTextExtractor(fields);
+        fieldWeights = new float[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            fieldWeights[i] = fields.get(i).getWeight();
+        }
+    }
 
-    public void processDocumentInPage(Document document, int pageId) {
-        HashMap<String, HashMap<Field, Integer>> words = scanWords(document);
-        updateLemmas(words, pageId);
+    public PageLemmas scanDocument(Document document, NodeVisitor listener) {
+        return scanWords(document, listener);
     }
 
-    public ArrayList<Lemma> findLemmasForText(String text) {
-        ArrayList<Lemma> result = new ArrayList<>();
-        HashSet<String> lemmaStrings = findLemmaStringsInText(text);
-        Iterable<Lemma> lemmaIterable = lemmaRepository.findByLemmaInOrderByFrequencyAsc(lemmaStrings);
-        for (Lemma lemma : lemmaIterable) {
-            result.add(lemma);
+    public ArrayList<Integer> findLemmaIds(Set<String> lemmas) {
+        ArrayList<Integer> result = new ArrayList<>();
+        for (String name : lemmas) {
+            LemmaDictionary.Entry entry = dictionary.get(name);
+            if (entry != null) {
+                result.add(entry.getId());
+            }
         }
         return result;
     }
 
+    public LemmaDictionary getDictionary() {
+        return dictionary;
+    }
+
+    public void saveChanges(LemmaDictionary.Changes changes) {
+        int batchSize = Math.max(1, appProperties.getIndexing().getJdbcBatchSize());
+        List<LemmaDictionary.Entry> added = changes.getAdded();
+        if (!added.isEmpty()) {
+            jdbcTemplate.batchUpdate("INSERT INTO lemma (id, lemma, frequency) VALUES (?, ?, ?)",
+                    added, batchSize, (statement, entry) -> {
+                        statement.setInt(1, entry.getId());
+                        statement.setString(2, entry.getLemma());
+                        statement.setInt(3, entry.getFrequency());
+                    });
+        }
+        // обновляем в порядке идентификаторов, чтобы строки блокировались в одном порядке
+        TreeMap<Integer, Integer> deltas = new TreeMap<>();
+        ArrayList<Integer> unused = new ArrayList<>();
+        changes.getFrequencyDeltas().forEach((id, delta) -> {
+            if (changes.isUnused(id)) {
+                unused.add(id);
+            } else if (delta != 0) {
+                deltas.put(id, delta);
+            }
+        });
+        if (!deltas.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE lemma SET frequency = frequency + ? WHERE id = ?",
+                    deltas.entrySet(), batchSize, (statement, delta) -> {
+                        statement.setInt(1, delta.getValue());
+                        statement.setInt(2, delta.getKey());
+                    });
+        }
+        if (!unused.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM lemma WHERE id = ?", unused, batchSize,
+                    (statement, id) -> statement.setInt(1, id));
+        }
+    }
+
     public HashSet<String> findLemmaStringsInText(String text) {
         HashSet<String> lemmaStrings = new HashSet<>();
-        String[] wordsArr = text.split(TEXT_SPLIT_REGEX);
-        for(String word : wordsArr) {
-            if (word.length() == 0) {
+        TextTokenizer tokenizer = TOKENIZERS.get().reset(text);
+        while (tokenizer.next()) {
+            if (!morphologyRouter.supports(tokenizer.script())) {
                 continue;
             }
-            List<String> wordBaseForms = getWordBaseForms(word);
+            List<String> wordBaseForms = getWordBaseForms(tokenizer.token());
             for (String baseForm : wordBaseForms) {
                 if(baseForm.length() == 0) {
                     continue;
@@ -73,206 +166,151 @@ public class LemmaServiceImpl implements LemmaService {
     }
 
     public long getNumLemmas() {
-        return lemmaRepository.getNumLemmas();
+        return dictionary.size();
+    }
+
+    public JsonObject getCacheStats() {
+        return baseFormsCache.getStats();
     }
 
-    public void cleanUpLemmas(Set<Integer> lemmaIds) {
-        synchronized (this) {
-            Iterable<Lemma> lemmas = lemmaRepository.findByIdIn(lemmaIds);
-            Set<Integer> lemmasToDelete = new HashSet<>();
-            ArrayList<Lemma> lemmasToUpdate = new ArrayList<>();
-            for (Lemma lemma : lemmas) {
-                if (lemma.getFrequency() > 1) {
-                    lemma.setFrequency(lemma.getFrequency() - 1);
-                    lemmasToUpdate.add(lemma);
-                } else {
-                    lemmasToDelete.add(lemma.getId());
+    public void correctFrequencies(IntUnaryOperator pagesCount) {
+        int batchSize = Math.max(1, appProperties.getIndexing().getJdbcBatchSize());
+        synchronized (dictionary) {
+            ArrayList<LemmaDictionary.Entry> corrected = new ArrayList<>();
+            ArrayList<Integer> unused = new ArrayList<>();
+            for (LemmaDictionary.Entry entry : dictionary.entries()) {
+                int frequency = pagesCount.applyAsInt(entry.getId());
+                if (frequency == 0) {
+                    unused.add(entry.getId());
+                } else if (frequency != entry.getFrequency()) {
+                    dictionary.load(entry.getId(), entry.getLemma(), frequency);
+                    corrected.add(dictionary.get(entry.getId()));
                 }
             }
-            if (!lemmasToUpdate.isEmpty()) {
-                lemmaRepository.saveAll(lemmasToUpdate);
+            if (!corrected.isEmpty()) {
+                jdbcTemplate.batchUpdate("UPDATE lemma SET frequency = ? WHERE id = ?", corrected, batchSize,
+                        (statement, entry) -> {
+                            statement.setInt(1, entry.getFrequency());
+                            statement.setInt(2, entry.getId());
+                        });
             }
-            if (!lemmasToDelete.isEmpty()) {
-                lemmaRepository.deleteLemmasByIds(lemmasToDelete);
+            if (!unused.isEmpty()) {
+                jdbcTemplate.batchUpdate("DELETE FROM lemma WHERE id = ?", unused, batchSize,
+                        (statement, id) -> statement.setInt(1, id));
+                dictionary.remove(unused);
             }
-        }
-    }
-
-    /**
-     * Поиск слов на вебстранице
-     * @param document обьект с текстом вебстраницы
-     * @return список слов с количеством их появления в полях html документа
-     */
-    private HashMap<String, HashMap<Field, Integer> > scanWords(Document document) {
-        HashMap<String, HashMap<Field, Integer> > words = new HashMap<>();
-        ArrayList<Field> fields = fieldService.getAllFields();
-        for (Field field : fields) {
-            Elements elements = document.select(field.getName());
-            for(Element el : elements) {
-                scanLemmas(el.text().toLowerCase(), words, field);
+            if (!corrected.isEmpty() || !unused.isEmpty()) {
+                System.out.println("Исправлены частоты лемм: " + corrected.size() + ", удалено неиспользуемых лемм: " +
+                        unused.size());
             }
         }
-        return words;
     }
 
     /**
-     * Поиск слов в элементах вебстраницы
-     * @param text текст элемента вебстраницы
-     * @param words список слов с количеством их появления в полях html документа
-     * @param field ссылка на обьект поля
+     * Загрузка словаря лемм из таблицы lemma.
+     * <p> Имена лемм приводятся к канонической форме, леммы, записанные до её появления и совпадающие
+     * в канонической форме, например 'тёмный' и 'темный', объединяются в одну
      */
-    private void scanLemmas(String text, HashMap<String, HashMap<Field, Integer> > words, Field field) {
-        String[] wordsArr = text.split(TEXT_SPLIT_REGEX);
-        for(String word : wordsArr) {
-            if(word.length() == 0) {
-                continue;
-            }
-            List<String> wordBaseForms = getWordBaseForms(word);
-            for (String baseForm : wordBaseForms) {
-                if (words.containsKey(baseForm)) {
-                    HashMap<Field, Integer> wordMap = words.get(baseForm);
-                    int count = wordMap.getOrDefault(field, 0);
-                    wordMap.put(field, count + 1);
-                } else {
-                    HashMap<Field, Integer> wordMap = new HashMap<>();
-                    wordMap.put(field, 1);
-                    words.put(baseForm, wordMap);
+    private void loadDictionary() {
+        long start = System.currentTimeMillis();
+        // повторяющиеся леммы: идентификатор повторяющейся леммы -> идентификатор основной
+        HashMap<Integer, Integer> duplicates = new HashMap<>();
+        int lastId = 0;
+        while (true) {
+            ArrayList<Tuple> rows = lemmaRepository.getLemmasAfterId(lastId, LOAD_PAGE_SIZE);
+            for (Tuple row : rows) {
+                int id = ((Number) row.get(0)).intValue();
+                String name = (String) row.get(1);
+                String canonicalName = TextTokenizer.normalize(name);
+                LemmaDictionary.Entry entry = dictionary.get(canonicalName);
+                if (entry != null) {
+                    duplicates.put(id, entry.getId());
+                    continue;
+                }
+                if (!canonicalName.equals(name)) {
+                    lemmaRepository.renameLemma(id, canonicalName);
                 }
+                dictionary.load(id, canonicalName, ((Number) row.get(2)).intValue());
             }
-        }
-    }
-
-    /**
-     * @return обьект из библиотеки лемматизации для получения лемм (исходных форм слов) на русском языке
-     */
-    private LuceneMorphology getRussianMorph() {
-        if(russianMorph == null) {
-            try {
-                russianMorph = new RussianLuceneMorphology();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+            if (rows.size() < LOAD_PAGE_SIZE) {
+                break;
             }
+            lastId = ((Number) rows.get(rows.size() - 1).get(0)).intValue();
         }
-        return russianMorph;
+        duplicates.forEach(this::mergeLemmas);
+        System.out.println("Словарь лемм загружен за " + (System.currentTimeMillis() - start) + "ms: " +
+                dictionary.size() + " лемм, объединено повторяющихся лемм: " + duplicates.size());
     }
 
     /**
-     * @return обьект из библиотеки лемматизации для получения лемм (исходных форм слов) на английском языке
+     * Объединение повторяющейся леммы с основной: индексы переносятся на основную лемму,
+     * если на странице уже есть основная лемма - индекс повторяющейся удаляется, частота пересчитывается
+     * @param duplicateId идентификатор повторяющейся леммы
+     * @param lemmaId идентификатор основной леммы
      */
-    private LuceneMorphology getEnglishMorph() {
-        if(englishMorph == null) {
-            try {
-                englishMorph = new EnglishLuceneMorphology();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
-        }
-        return englishMorph;
+    private void mergeLemmas(int duplicateId, int lemmaId) {
+        indexRepository.moveIndexesToLemma(duplicateId, lemmaId);
+        indexRepository.deleteByLemmaId(duplicateId);
+        lemmaRepository.deleteLemmasByIds(Collections.singleton(duplicateId));
+        lemmaRepository.recountFrequency(lemmaId);
+        dictionary.load(lemmaId, dictionary.get(lemmaId).getLemma(), lemmaRepository.getFrequency(lemmaId));
     }
 
     /**
-     * Получение информации по слову (для определения части речи)
-     * @param word слово
-     * @return информация по слову
+     * Поиск слов на вебстранице, текст всех полей извлекается за один обход документа
+     * @param document обьект с текстом вебстраницы
+     * @param listener обработчик узлов документа, вызываемый в том же обходе, может быть null
+     * @return леммы страницы и их ранги
      */
-    private List<String> getMorphInfo(String word) {
-        List<String> morphInfo = null;
-        try {
-            morphInfo = getRussianMorph().getMorphInfo(word);
-        } catch (WrongCharaterException ex) {
-            try {
-                morphInfo = getEnglishMorph().getMorphInfo(word);
-            } catch (WrongCharaterException ignored) {
-            }
-        }
-        return morphInfo;
+    private PageLemmas scanWords(Document document, NodeVisitor listener) {
+        TermCounter counter = TERM_COUNTERS.get();
+        counter.reset(fieldWeights.length);
+        fieldTextExtractor.extract(document, (text, fieldMask) -> scanLemmas(text, counter, fieldMask),
+                listener);
+        return counter.toPageLemmas(fieldWeights);
     }
 
     /**
-     * @param word слово
-     * @return список возможных исходных форм слова
+     * Поиск слов в тексте полей вебстраницы
+     * @param text текст
+     * @param counter счетчик появлений лемм в полях
+     * @param fieldMask маска полей, в которых находится текст
      */
-    private List<String> getWordBaseForms(String word) {
-        ArrayList<String> result = new ArrayList<>();
-        List<String> morphInfoList = getMorphInfo(word);
-        if (morphInfoList == null) {
-            return result;
-        }
-        for (String morphInfo : morphInfoList) {
-            int delIndex = morphInfo.indexOf('|');
-            if (delIndex == -1 || morphInfo.matches(IGNORE_SERVICE_PARTS_REGEX)) {
+    private void scanLemmas(CharSequence text, TermCounter counter, long fieldMask) {
+        TextTokenizer tokenizer = TOKENIZERS.get().reset(text);
+        while (tokenizer.next()) {
+            if (!morphologyRouter.supports(tokenizer.script())) {
                 continue;
             }
-            String morphInfoWord = morphInfo.substring(0, delIndex);
-            if (morphInfoWord.isEmpty()) {
-                continue;
-            }
-            List<String> normalForms = null;
-            try {
-                normalForms = getRussianMorph().getNormalForms(morphInfoWord);
-            } catch (WrongCharaterException ex) {
-                try {
-                    normalForms = getEnglishMorph().getNormalForms(morphInfoWord);
-                } catch (WrongCharaterException ignored) {
-                }
-            } catch (Exception ex) {
-                System.err.println("Ошибка поиска нормальных форм слова: " + ex + ", слово: " + morphInfoWord);
-            }
-            if (normalForms != null) {
-                result.addAll(normalForms);
+            for (String baseForm : getWordBaseForms(tokenizer.token())) {
+                counter.add(baseForm, fieldMask);
             }
         }
-        return result;
     }
 
     /**
-     * Обновление данных по леммам в таблице
-     * @param words список слов с количеством их появления в полях html документа
-     * @param pageId идентификатор страницы
+     * Получение исходных форм слова из кеша, если слова нет в кеше - исходные формы ищутся в словаре
+     * @param word слово
+     * @return неизменяемый список возможных исходных форм слова
      */
-    private void updateLemmas(HashMap<String, HashMap<Field, Integer> > words, int pageId) {
-        ArrayList<Lemma> lemmas = new ArrayList<>();
-        ArrayList<Lemma> notFoundLemmas = new ArrayList<>();
-        synchronized (this) {
-            Iterable<Lemma> lemmaIterable = lemmaRepository.findByLemmaIn(words.keySet());
-            for (Lemma lemma : lemmaIterable) {
-                lemma.setFrequency(lemma.getFrequency() + 1);
-                try {
-                    lemma.countRank(words.get(lemma.getLemma()));
-                } catch (NullPointerException ex) {
-                    notFoundLemmas.add(lemma);
-                }
-                words.remove(lemma.getLemma());
-                lemmas.add(lemma);
-            }
-            for (Map.Entry<String, HashMap<Field, Integer>> word : words.entrySet()) {
-                Lemma lemma = new Lemma(word.getKey(), 1);
-                lemma.countRank(word.getValue());
-                lemmas.add(lemma);
-            }
-            lemmaRepository.saveAll(lemmas);
-        }
-        indexService.updateIndexes(lemmas, pageId);
-        alignLemmas(notFoundLemmas, pageId);
+    private List<String> getWordBaseForms(String word) {
+        return baseFormsCache.get(word, this::findWordBaseForms);
     }
 
     /**
-     * Установка одинаковых значений 'rank' для идентичных лемм,
-     * которые записываются в разные строки таблицы lemma,
-     * например слова 'темный' и 'тёмный' будут одинаковыми при запросах в mysql
-     * @param lemmas список "одинаковых для БД" лемм
-     * @param pageId идентификатор страницы
+     * Поиск исходных форм слова анализатором для алфавита слова
+     * @param word слово
+     * @return неизменяемый список возможных исходных форм слова в канонической форме
      */
-    private void alignLemmas(ArrayList<Lemma> lemmas, int pageId) {
-        for (Lemma lemma : lemmas) {
-            HashSet<String> findSet = new HashSet<>();
-            findSet.add(lemma.getLemma());
-            HashSet<Integer> lemmaIds = new HashSet<>();
-            Iterable<Lemma> lemmaIterable = lemmaRepository.findByLemmaIn(findSet);
-            for (Lemma foundLemma : lemmaIterable) {
-                lemmaIds.add(foundLemma.getId());
+    private List<String> findWordBaseForms(String word) {
+        List<String> baseForms = morphologyRouter.getBaseForms(word);
+        ArrayList<String> result = new ArrayList<>(baseForms.size());
+        for (String baseForm : baseForms) {
+            String canonicalForm = TextTokenizer.normalize(baseForm);
+            if (!result.contains(canonicalForm)) {
+                result.add(canonicalForm);
             }
-            indexService.alignLemmasRank(lemmaIds, pageId);
         }
+        return List.copyOf(result);
     }
 }
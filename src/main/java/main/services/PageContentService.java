@@ -0,0 +1,26 @@
+package main.services;
+
+import com.github.cliftonlabs.json_simple.JsonObject;
+import main.model.Page;
+import main.utils.bypass.BypassData;
+
+public interface PageContentService {
+    /**
+     * Кодирование контента страницы для сохранения в базе,
+     * загруженный контент в данных страницы заменяется закодированными данными
+     * @param data данные результатов сканирования страницы
+     */
+    void encodeContent(BypassData data);
+
+    /**
+     * Получение контента страницы, сохраненного в базе
+     * @param page обьект страницы
+     * @return HTML-код страницы, null если контент не сохранен или поврежден
+     */
+    String getContent(Page page);
+
+    /**
+     * @return статистика сжатия контента страниц
+     */
+    JsonObject getStats();
+}
@@ -0,0 +1,81 @@
+package main.services;
+
+import com.github.cliftonlabs.json_simple.JsonObject;
+import main.model.ApplicationProps;
+import main.model.Page;
+import main.utils.bypass.BypassData;
+import main.utils.content.ContentCodec;
+import main.utils.content.ContentCodecStats;
+import main.utils.content.PlainContentCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Сервис для сжатия контента страниц перед сохранением в базу и распаковки при чтении.
+ * <p> Способ сжатия задается в application.yml, имя способа сохраняется вместе с контентом,
+ * поэтому страницы, сохраненные с другими настройками, читаются без переиндексации.
+ * <p> Сохраняется загруженный контент в исходной кодировке ответа, а не HTML, повторно собранный из DOM
+ */
+@Service
+@EnableConfigurationProperties(value = ApplicationProps.class)
+public class PageContentServiceImpl implements PageContentService {
+    // настройки приложения из application.yml
+    @Autowired
+    private ApplicationProps appProperties;
+    // текущий способ кодирования контента
+    private ContentCodec codec;
+    // статистика кодирования
+    private final ContentCodecStats stats = new ContentCodecStats();
+
+    /**
+     * метод инициализации сервиса, вызывается после коннекта к БД до начала работы контроллеров,
+     * выбирает способ кодирования контента
+     */
+    @PostConstruct
+    public void initialize() {
+        codec = ContentCodec.forName(appProperties.getIndexing().getContentCodec());
+    }
+
+    public void encodeContent(BypassData data) {
+        byte[] raw = data.getContentData();
+        if (raw == null || data.getContentCodec() != null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            data.setContentData(codec.encode(raw));
+            data.setContentCodec(codec.getName());
+        } catch (IOException e) {
+            System.err.println("Ошибка сжатия контента страницы " + data.getPath() + ": " + e);
+            data.setContentData(raw);
+            data.setContentCodec(PlainContentCodec.NAME);
+        }
+        stats.addEncoded(raw.length, data.getContentData().length, System.nanoTime() - start);
+    }
+
+    public String getContent(Page page) {
+        if (page.getContentData() == null) {
+            return page.getContent();
+        }
+        long start = System.nanoTime();
+        try {
+            byte[] raw = ContentCodec.forName(page.getContentCodec()).decode(page.getContentData());
+            stats.addDecoded(raw.length, System.nanoTime() - start);
+            return new String(raw, page.getContentCharset() == null ?
+                    StandardCharsets.UTF_8 : Charset.forName(page.getContentCharset()));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Ошибка чтения контента страницы " + page.getId() + ": " + e);
+            return null;
+        }
+    }
+
+    public JsonObject getStats() {
+        return stats.toJson(codec.getName());
+    }
+}
@@ -1,38 +1,42 @@
 package main.services;
 
 import main.model.Page;
-import main.model.Site;
-import main.utils.bypass.BypassData;
-import org.springframework.data.jpa.repository.Modifying;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
-import org.springframework.transaction.annotation.Transactional;
-
-import javax.persistence.Tuple;
+import main.utils.bypass.SavedPages;
+import main.utils.bypass.fetch.PageValidators;
+
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Set;
 
 public interface PageService {
     /**
-     * Получение списка страниц из таблицы по идентификаторам
+     * Получение списка страниц для результатов поиска по идентификаторам.
+     * <p> Заполняются только путь, заголовок, текст и сайт страницы (идентификатор, адрес и имя),
+     * контент и ссылки загружаются только для страниц, проиндексированных до сохранения текста
      * @param pageIds список идентификаторов страниц
      * @return список страниц
      */
     HashMap<Integer, Page> getPages(Set<Integer> pageIds);
 
     /**
-     * Сохранение/обновление данных по странице в базе
-     * @param site ссылка на обьект вебсайта
-     * @param data данные результатов сканирования страницы
-     * @return идентификатор сохраненной страницы, -1 если страницу не удалось сохранить
+     * Получение списка страниц сайта из таблицы по путям
+     * @param siteId идентификатор сайта
+     * @param paths пути к страницам
+     * @return список страниц, ключ - путь к странице
+     */
+    HashMap<String, Page> getPagesByPath(int siteId, Set<String> paths);
+
+    /**
+     * Сохранение/обновление данных по страницам в базе
+     * @param pages список страниц
      */
-    int savePage(Site site, BypassData data);
+    void savePages(Collection<Page> pages);
 
     /**
-     * @return общее количество проиндексированных вебстраниц
+     * @return идентификаторы сайтов всех страниц: идентификатор страницы -> идентификатор сайта
      */
-    long getNumPages();
+    HashMap<Integer, Integer> getPageSites();
 
     /**
      * Получения списка идентификаторов страниц для сайта
@@ -42,19 +46,38 @@ public interface PageService {
     Set<Integer> getPageIdsForSite(int siteId);
 
     /**
-     * Удаление всех проиндексированных страниц для сайта
+     * Получение сохраненных страниц сайта для отметок о страницах, найденных при обходе
      * @param siteId идентификатор сайта
+     * @return хеши путей и идентификаторы страниц сайта
      */
-    void deletePagesForSite(int siteId);
+    SavedPages getSavedPages(int siteId);
 
     /**
-     * Получение списка идентификаторов страниц,
-     * отсортированного по убыванию рассчитанного rank для каждой страницы.
-     * <p> Вспомогательный метод для обработки поисковых запросов
-     * @param pageIds список идентификаторов страниц, по которому будет проводиться поиск
-     * @param offset сдвиг от начала списка результатов
-     * @param limit количество результатов, которое необходимо вывести
-     * @return список идентификаторов страниц и рассчитанного rank для каждой страницы
+     * Получение хеша контента и валидаторов HTTP страницы
+     * @param pageId идентификатор страницы
+     * @param path путь к странице, если путь страницы не совпадает - страница считается не найденной
+     * @return признаки версии страницы, null если страница не найдена,
+     * у страницы без сохраненных ссылок признаки версии не заполняются
+     */
+    PageValidators getPageValidators(int pageId, String path);
+
+    /**
+     * Получение сохраненных ссылок страницы
+     * @param siteId идентификатор сайта
+     * @param path путь к странице
+     * @return пути к "дочерним" страницам по одному в строке, null если ссылки не сохранены
      */
-    ArrayList<Tuple> searchPagesForIds(Set<Integer> pageIds, Integer offset, Integer limit);
+    String getPageLinks(int siteId, String path);
+
+    /**
+     * Удаление страниц из таблицы
+     * @param pageIds список идентификаторов страниц
+     */
+    void deletePages(Set<Integer> pageIds);
+
+    /**
+     * Удаление всех проиндексированных страниц для сайта
+     * @param siteId идентификатор сайта
+     */
+    void deletePagesForSite(int siteId);
 }
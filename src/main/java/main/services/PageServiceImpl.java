@@ -4,13 +4,16 @@ package main.services;
 import main.model.Page;
 import main.model.PageRepository;
 import main.model.Site;
-import main.utils.bypass.BypassData;
+import main.utils.bypass.SavedPages;
+import main.utils.bypass.fetch.PageValidators;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.persistence.Tuple;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Set;
 
 /**
@@ -21,60 +24,114 @@ public class PageServiceImpl implements PageService {
     // обьект для работы с таблицей в БД
     @Autowired
     private PageRepository pageRepository;
+    // количество страниц в одном запросе путей страниц сайта
+    private static final int PATHS_BATCH_SIZE = 10000;
 
     public HashMap<Integer, Page> getPages(Set<Integer> pageIds) {
-        Iterable<Page> iterable = pageRepository.findByIdIn(pageIds);
         HashMap<Integer, Page> result = new HashMap<>();
-        for(Page page : iterable) {
+        if (pageIds.isEmpty()) {
+            return result;
+        }
+        HashMap<Integer, Site> sites = new HashMap<>();
+        // страницы без сохраненного текста, текст для них извлекается из контента
+        HashSet<Integer> contentPageIds = new HashSet<>();
+        for (Tuple row : pageRepository.getSearchResultPages(pageIds)) {
+            Page page = new Page();
+            page.setId(((Number) row.get(0)).intValue());
+            page.setPath((String) row.get(1));
+            page.setTitle((String) row.get(2));
+            page.setText((String) row.get(3));
+            page.setSite(sites.computeIfAbsent(((Number) row.get(4)).intValue(), siteId -> {
+                Site site = new Site();
+                site.setId(siteId);
+                site.setUrl((String) row.get(5));
+                site.setName((String) row.get(6));
+                return site;
+            }));
+            if (((Number) row.get(7)).intValue() != 0) {
+                contentPageIds.add(page.getId());
+            }
             result.put(page.getId(), page);
         }
+        if (!contentPageIds.isEmpty()) {
+            for (Page page : pageRepository.findWithSiteByIdIn(contentPageIds)) {
+                result.put(page.getId(), page);
+            }
+        }
         return result;
     }
 
-    public int savePage(Site site, BypassData data) {
-        Page page;
-        synchronized (this) {
-            page = pageRepository.findByPathAndSiteId(data.getPath(), site.getId());
+    public HashMap<String, Page> getPagesByPath(int siteId, Set<String> paths) {
+        HashMap<String, Page> result = new HashMap<>();
+        if (paths.isEmpty()) {
+            return result;
         }
-        if (page == null) {
-            page = new Page();
-            page.setPath(data.getPath());
-            page.setSite(site);
-            System.out.println("Добавляем страницу " + site.getUrl() + page.getPath() + " в базу данных");
-        } else {
-            System.out.println("Обновляем страницу " + site.getUrl() + page.getPath() + " в базе данных");
+        for (Page page : pageRepository.findBySiteIdAndPathIn(siteId, paths)) {
+            result.put(page.getPath(), page);
         }
-        page.setCode(data.getStatusCode());
-        page.setContent(data.getContent());
-        synchronized (this) {
-            try {
-                pageRepository.save(page);
-            } catch (Exception ex) {
-                System.err.println("Ошибка сохранения страницы:" + ex + ", pageInfo: " + page);
-                return -1;
-            }
+        return result;
+    }
+
+    public void savePages(Collection<Page> pages) {
+        if (!pages.isEmpty()) {
+            pageRepository.saveAll(pages);
         }
-        return page.getId();
     }
 
-    public long getNumPages() {
-        return pageRepository.getNumPages();
+    public HashMap<Integer, Integer> getPageSites() {
+        HashMap<Integer, Integer> result = new HashMap<>();
+        for (Tuple row : pageRepository.getPageSites()) {
+            result.put(((Number) row.get(0)).intValue(), ((Number) row.get(1)).intValue());
+        }
+        return result;
     }
 
     public Set<Integer> getPageIdsForSite(int siteId) {
         return pageRepository.getPageIdsForSite(siteId);
     }
 
-    public void deletePagesForSite(int siteId) {
-        synchronized (this) {
-            pageRepository.deleteBySiteId(siteId);
+    public SavedPages getSavedPages(int siteId) {
+        SavedPages result = new SavedPages();
+        int lastId = 0;
+        while (true) {
+            ArrayList<Tuple> rows = pageRepository.getPagePathsForSite(siteId, lastId, PATHS_BATCH_SIZE);
+            for (Tuple row : rows) {
+                lastId = ((Number) row.get(0)).intValue();
+                result.add(lastId, (String) row.get(1));
+            }
+            if (rows.size() < PATHS_BATCH_SIZE) {
+                return result;
+            }
         }
     }
 
-    public ArrayList<Tuple> searchPagesForIds(Set<Integer> pageIds, Integer offset, Integer limit) {
-        if (pageIds.isEmpty()) {
-            return new ArrayList<>();
+    public PageValidators getPageValidators(int pageId, String path) {
+        ArrayList<Tuple> rows = pageRepository.getPageValidators(pageId);
+        if (rows.isEmpty() || !path.equals(rows.get(0).get(0))) {
+            return null;
+        }
+        Tuple row = rows.get(0);
+        PageValidators validators = new PageValidators();
+        // без сохраненных ссылок неизменившуюся страницу всё равно придется разбирать
+        if (((Number) row.get(4)).intValue() != 0) {
+            validators.setContentHash((String) row.get(1));
+            validators.setEtag((String) row.get(2));
+            validators.setLastModified((String) row.get(3));
+        }
+        return validators;
+    }
+
+    public String getPageLinks(int siteId, String path) {
+        return pageRepository.getPageLinks(siteId, path);
+    }
+
+    public void deletePages(Set<Integer> pageIds) {
+        if (!pageIds.isEmpty()) {
+            pageRepository.deleteByIds(pageIds);
         }
-        return pageRepository.searchPagesForIds(pageIds, offset, limit);
+    }
+
+    public void deletePagesForSite(int siteId) {
+        pageRepository.deleteBySiteId(siteId);
     }
 }
@@ -0,0 +1,43 @@
+package main.services;
+
+import main.utils.index.SearchCursor;
+import main.utils.index.TopPages;
+
+import java.util.*;
+
+public interface SearchIndexService {
+    /**
+     * Добавление или обновление рангов лемм на странице в обратном индексе,
+     * вызывается после записи страницы в базу, поколение индекса сайта увеличивается
+     * @param siteId идентификатор сайта страницы
+     * @param pageId идентификатор страницы
+     * @param ranks ранги лемм на странице: идентификатор леммы -> ранг
+     */
+    void addPage(int siteId, int pageId, Map<Integer, Float> ranks);
+
+    /**
+     * Удаление страниц из обратного индекса, поколение индекса сайта увеличивается
+     * @param siteId идентификатор сайта страниц
+     * @param pageIds список идентификаторов страниц
+     * @param lemmaIds список идентификаторов лемм, найденных на страницах
+     */
+    void removePages(int siteId, Set<Integer> pageIds, Set<Integer> lemmaIds);
+
+    /**
+     * Поколение индекса сайта увеличивается при каждом изменении страниц сайта,
+     * по нему определяется, устарели ли сохраненные результаты поиска
+     * @param siteId идентификатор сайта, 0 - поколение индекса всех сайтов
+     * @return поколение индекса
+     */
+    long getGeneration(int siteId);
+
+    /**
+     * Поиск лучших по релевантности страниц, на которых найдены все заданные леммы
+     * @param lemmaIds список идентификаторов лемм
+     * @param siteId идентификатор сайта, 0 - поиск по всем сайтам
+     * @param after позиция в списке результатов, после которой отбираются страницы, null - с начала списка
+     * @param limit количество лучших страниц
+     * @return общее количество найденных страниц и лучшие страницы по убыванию суммы рангов лемм
+     */
+    TopPages findPages(Collection<Integer> lemmaIds, int siteId, SearchCursor after, int limit);
+}
@@ -0,0 +1,116 @@
+package main.services;
+
+import main.model.IndexRepository;
+import main.utils.index.SearchCursor;
+import main.utils.index.ShardedIndex;
+import main.utils.index.TopPages;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.Tuple;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сервис поиска страниц по обратному индексу, который хранится в памяти.
+ * <p> Индекс загружается из таблицы index при запуске приложения,
+ * затем обновляется сервисом записи страниц после сохранения каждого пакета
+ */
+@Service
+// индекс загружается после словаря лемм, при загрузке словаря объединяются повторяющиеся леммы
+@DependsOn("lemmaServiceImpl")
+public class SearchIndexServiceImpl implements SearchIndexService {
+    // количество строк, читаемых из таблицы за один запрос при загрузке индекса
+    private static final int LOAD_PAGE_SIZE = 10000;
+
+    // обьект для работы с таблицей в БД
+    @Autowired
+    private IndexRepository indexRepository;
+    // ссылка на обьект для доступа к сервису лемм
+    @Autowired
+    private LemmaService lemmaService;
+    // ссылка на обьект для доступа к сервису статистики сайтов
+    @Autowired
+    private SiteStatsService siteStatsService;
+    // ссылка на обьект для доступа к сервису вебстраниц
+    @Autowired
+    private PageService pageService;
+    // обратный индекс, разделенный по сайтам
+    private final ShardedIndex index = new ShardedIndex();
+    // поколения индекса сайтов по идентификаторам сайтов
+    private final ConcurrentHashMap<Integer, AtomicLong> siteGenerations = new ConcurrentHashMap<>();
+    // поколение индекса всех сайтов, увеличивается при изменении страниц любого сайта
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * метод инициализации сервиса, вызывается после коннекта к БД до начала работы контроллеров,
+     * загружает обратный индекс из таблицы index, исправляет по нему частоты лемм
+     * и заполняет счетчики статистики сайтов в том же проходе по таблице
+     */
+    @PostConstruct
+    public void initialize() {
+        long start = System.currentTimeMillis();
+        HashMap<Integer, Integer> pageSites = pageService.getPageSites();
+        ShardedIndex.Loader loader = new ShardedIndex.Loader(index);
+        SiteStatsService.Loader statsLoader = siteStatsService.startLoading(pageSites);
+        int lastId = 0;
+        while (true) {
+            ArrayList<Tuple> rows = indexRepository.getIndexesAfterId(lastId, LOAD_PAGE_SIZE);
+            for (Tuple row : rows) {
+                int lemmaId = ((Number) row.get(1)).intValue();
+                int pageId = ((Number) row.get(2)).intValue();
+                Integer siteId = pageSites.get(pageId);
+                if (siteId == null) {
+                    continue;
+                }
+                loader.add(siteId, lemmaId, pageId, ((Number) row.get(3)).floatValue());
+                statsLoader.addIndex(siteId, lemmaId);
+            }
+            if (rows.size() < LOAD_PAGE_SIZE) {
+                break;
+            }
+            lastId = ((Number) rows.get(rows.size() - 1).get(0)).intValue();
+        }
+        loader.finish();
+        statsLoader.finish();
+        pageSites.clear();
+        lemmaService.correctFrequencies(index::getPagesCount);
+        long[] stats = index.getStats();
+        System.out.println("Обратный индекс загружен за " + (System.currentTimeMillis() - start) + "ms: " +
+                stats[0] + " сайтов, " + stats[1] + " списков лемм, " + stats[2] + " записей, " +
+                (stats[3] / 1024) + " KB");
+    }
+
+    public void addPage(int siteId, int pageId, Map<Integer, Float> ranks) {
+        index.addPage(siteId, pageId, ranks);
+        nextGeneration(siteId);
+    }
+
+    public void removePages(int siteId, Set<Integer> pageIds, Set<Integer> lemmaIds) {
+        index.removePages(siteId, pageIds, lemmaIds);
+        nextGeneration(siteId);
+    }
+
+    public long getGeneration(int siteId) {
+        if (siteId == 0) {
+            return generation.get();
+        }
+        return siteGenerations.computeIfAbsent(siteId, k -> new AtomicLong()).get();
+    }
+
+    public TopPages findPages(Collection<Integer> lemmaIds, int siteId, SearchCursor after, int limit) {
+        return index.search(lemmaIds, siteId, after, limit);
+    }
+
+    /**
+     * Увеличение поколения индекса сайта и поколения индекса всех сайтов
+     * @param siteId идентификатор сайта
+     */
+    private void nextGeneration(int siteId) {
+        siteGenerations.computeIfAbsent(siteId, k -> new AtomicLong()).incrementAndGet();
+        generation.incrementAndGet();
+    }
+}
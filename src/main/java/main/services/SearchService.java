@@ -4,12 +4,20 @@ import com.github.cliftonlabs.json_simple.JsonObject;
 
 public interface SearchService {
     /**
-     * Обработка поискового запроса и выдача результата
+     * Обработка поискового запроса и выдача результата.
+     * <p> Если окно результатов заполнено, ответ содержит позицию последнего результата (cursor),
+     * по которой следующая страница результатов выдается без пересчета предыдущих
      * @param query текст запроса
      * @param siteUrl url вебсайта
-     * @param offset сдвиг от начала списка результатов
+     * @param offset сдвиг от начала списка результатов, не используется, если задана позиция
      * @param limit количество результатов, которое необходимо вывести
+     * @param cursor позиция из предыдущего ответа, после которой выдаются результаты, null - с начала списка
      * @return список найденных страниц и фрагментов текста с найденными словами
      */
-    JsonObject processSearch(String query, String siteUrl, int offset, int limit);
+    JsonObject processSearch(String query, String siteUrl, int offset, int limit, String cursor);
+
+    /**
+     * @return статистика кеша результатов поиска
+     */
+    JsonObject getCacheStats();
 }
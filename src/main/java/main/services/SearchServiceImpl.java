@@ -2,163 +2,330 @@ package main.services;
 
 import com.github.cliftonlabs.json_simple.JsonArray;
 import com.github.cliftonlabs.json_simple.JsonObject;
-import main.model.Lemma;
+import main.model.ApplicationProps;
 import main.model.Page;
 import main.model.Site;
 import main.utils.TimeCounter;
+import main.utils.cache.SearchResultCache;
+import main.utils.index.SearchCursor;
+import main.utils.index.TopPages;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.stereotype.Service;
 
-import javax.persistence.Tuple;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Сервис для поиска текста по страницам сохраненным в базе
+ * Сервис для поиска текста по страницам сохраненным в базе.
+ * <p> Результаты поиска сохраняются в кеше по набору лемм запроса, сайту и окну результатов
+ * и используются, пока не изменится поколение индекса сайта.
+ * <p> Страницы результатов загружаются вместе с сайтами одним запросом, фрагменты текста строятся параллельно
+ * в отдельном пуле потоков с ограничением времени на запрос
  */
 @Service
+@EnableConfigurationProperties(value = ApplicationProps.class)
 public class SearchServiceImpl implements SearchService {
     // ссылка на обьект для доступа к сервису лемм
     @Autowired
     private LemmaService lemmaService;
-    // ссылка на обьект для доступа к сервису индексов
+    // ссылка на обьект для доступа к обратному индексу в памяти
     @Autowired
-    private IndexService indexService;
+    private SearchIndexService searchIndexService;
+    // ссылка на обьект для доступа к сервису сжатия контента страниц
+    @Autowired
+    private PageContentService pageContentService;
     // ссылка на обьект для доступа к сервису вебстраниц
     @Autowired
     private PageService pageService;
     // ссылка на обьект для доступа к сервису сайтов
     @Autowired
     private SiteService siteService;
+    // настройки приложения из application.yml
+    @Autowired
+    private ApplicationProps appProperties;
+    // кеш результатов поиска
+    private SearchResultCache resultCache;
+    // пул потоков построения элементов результатов поиска
+    private ThreadPoolExecutor snippetExecutor;
     // количество слов, которое отображаем во фрагменте в результатах поиска перед найденными словами
     private static final int SNIPPET_WORDS_BEFORE = 3;
     // количество слов, которое отображаем во фрагменте в результатах поиска после найденных слов
     private static final int SNIPPET_WORDS_AFTER = 5;
 
-    public JsonObject processSearch(String query, String siteUrl, int offset, int limit) {
-        query = query.toLowerCase();
+    /**
+     * метод инициализации сервиса, вызывается до начала работы контроллеров, создает кеш результатов поиска
+     * и пул потоков построения фрагментов текста
+     */
+    @PostConstruct
+    public void initialize() {
+        ApplicationProps.SearchProps props = appProperties.getSearch();
+        resultCache = new SearchResultCache(props.getCacheMaxBytes());
+        int threads = Math.max(1, props.getSnippetThreads());
+        AtomicInteger counter = new AtomicInteger();
+        // при переполнении очереди задача отклоняется и элемент выдается без фрагмента текста
+        snippetExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, props.getSnippetQueueCapacity())), r -> {
+                    Thread thread = new Thread(r, "search-snippet-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
 
-        JsonObject result = new JsonObject();
-        result.put("result", true);
-        JsonArray arrayResult = new JsonArray();
+    /**
+     * Остановка пула потоков построения фрагментов текста при остановке приложения
+     */
+    @PreDestroy
+    public void shutdown() {
+        snippetExecutor.shutdownNow();
+    }
 
-        Set<Integer> pageIds = getPageIdsForLemmasInQuery(query);
-        if (pageIds.isEmpty()) {
-            result.put("count", 0);
-            result.put("data", arrayResult);
-            return result;
+    public JsonObject processSearch(String query, String siteUrl, int offset, int limit, String cursor) {
+        long start = System.nanoTime();
+        query = query.toLowerCase();
+        offset = Math.max(offset, 0);
+        limit = Math.max(limit, 0);
+        SearchCursor after = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            after = SearchCursor.decode(cursor);
+            if (after == null) {
+                JsonObject result = new JsonObject();
+                result.put("result", false);
+                result.put("error", "Неверная позиция в списке результатов");
+                return result;
+            }
+            offset = 0;
         }
 
-        pageIds = filterPagesBySite(siteUrl, pageIds);
+        Site site = getSite(siteUrl);
+        int siteId = site == null ? 0 : site.getId();
+        ArrayList<Integer> lemmaIds = findLemmaIdsInQuery(query);
+        // поколение читается до поиска: если индекс изменится во время поиска, результат будет считаться устаревшим
+        long generation = searchIndexService.getGeneration(siteId);
+        SearchResultCache.Key key = new SearchResultCache.Key(lemmaIds, siteId, after, offset, limit);
+        SearchResultCache.Entry entry = resultCache.get(key, generation);
+        if (entry != null && entry.getQuery().equals(query)) {
+            resultCache.addHit(System.nanoTime() - start);
+            return getResponse(entry, limit);
+        }
 
-        ArrayList<Tuple> sqlResults = pageService.searchPagesForIds(pageIds, offset, limit);
-        result.put("count", pageIds.size());
-        pageIds.clear();
-        Double maxRank = sqlResults.isEmpty() ? 0.0 : sqlResults.get(0).get(1, Double.class);
-        for (Tuple tuple : sqlResults) {
-            pageIds.add(tuple.get(0, Integer.class));
+        boolean rankingHit = entry != null;
+        int count;
+        int[] pageIds;
+        float[] scores;
+        if (rankingHit) {
+            // те же леммы в другом написании: найденные страницы берутся из кеша, фрагменты строятся заново
+            count = entry.getCount();
+            pageIds = entry.getPageIds();
+            scores = entry.getScores();
+        } else {
+            TopPages topPages = searchIndexService.findPages(lemmaIds, siteId, after,
+                    (int) Math.min(Integer.MAX_VALUE, (long) offset + limit));
+            count = topPages.getTotalCount();
+            int[] topPageIds = topPages.getPageIds();
+            float[] topScores = topPages.getScores();
+            int from = Math.min(offset, topPageIds.length);
+            pageIds = Arrays.copyOfRange(topPageIds, from, topPageIds.length);
+            scores = Arrays.copyOfRange(topScores, from, topScores.length);
         }
-        HashMap<Integer, Page> pageHashMap = pageService.getPages(pageIds);
-        for (Tuple tuple : sqlResults) {
-            Page page = pageHashMap.get(tuple.get(0, Integer.class));
-            if (page != null) {
-                page.setRelevance((float)(tuple.get(1, Double.class) / maxRank));
-                JsonObject item = getSearchItem(page, query);
-                arrayResult.add(item);
-            }
+        SearchItems searchItems = getSearchItems(pageIds, scores, query);
+        entry = new SearchResultCache.Entry(generation, count, pageIds, scores, query, searchItems.items);
+        // результат с элементами без фрагментов текста не сохраняется, следующий запрос построит их заново
+        if (searchItems.complete) {
+            resultCache.put(key, entry);
+        }
+        if (rankingHit) {
+            resultCache.addRankingHit(System.nanoTime() - start);
+        } else {
+            resultCache.addMiss(System.nanoTime() - start);
         }
-        result.put("data", arrayResult);
+        return getResponse(entry, limit);
+    }
 
+    public JsonObject getCacheStats() {
+        return resultCache.getStats();
+    }
+
+    /**
+     * @param entry результат поиска
+     * @param limit количество результатов в окне
+     * @return обьект ответа с результатами поиска и позицией последнего результата, если окно заполнено
+     */
+    private JsonObject getResponse(SearchResultCache.Entry entry, int limit) {
+        JsonObject result = new JsonObject();
+        result.put("result", true);
+        result.put("count", entry.getCount());
+        result.put("data", entry.getItems());
+        int[] pageIds = entry.getPageIds();
+        if (limit > 0 && pageIds.length == limit) {
+            int last = pageIds.length - 1;
+            result.put("cursor", new SearchCursor(entry.getScores()[last], pageIds[last]).encode());
+        }
         return result;
     }
 
     /**
-     * Получить список идентификаторов страниц,
-     * на которых находятся леммы, найденные в заданном запросе.
-     * <p> Леммы сортируются по возрастанию frequency,
-     * <p> для каждой следущей леммы в списке удаляем из списка идентификаторов страниц те,
-     * которые не были найдены для предыдущей леммы
-     * @param query текст запроса
-     * @return список идентификаторов страниц
+     * Получение элементов списка результатов поиска для найденных страниц.
+     * <p> Страницы загружаются одним запросом, элементы строятся параллельно в пуле потоков.
+     * Элементы, не построенные за время snippet-timeout или не поместившиеся в очередь пула,
+     * выдаются без фрагмента текста, их задачи прерываются
+     * @param pageIds идентификаторы страниц по убыванию релевантности
+     * @param scores релевантность страниц
+     * @param query текст поискового запроса
+     * @return элементы списка результатов поиска
      */
-    private Set<Integer> getPageIdsForLemmasInQuery(String query) {
-        HashSet<String> lemmaStrings = lemmaService.findLemmaStringsInText(query);
-        if (lemmaStrings.isEmpty()) {
-            return new HashSet<>();
+    private SearchItems getSearchItems(int[] pageIds, float[] scores, String query) {
+        SearchItems result = new SearchItems();
+        if (pageIds.length == 0) {
+            return result;
         }
-        ArrayList<Tuple> sqlResults = indexService.getLemmaIdsAndPageIdsSortedByFrequency(lemmaStrings);
-        Set<Integer> pageIds = new HashSet<>();
-        Set<Integer> prevPageIds = null;
-        Integer currentLemmaId = sqlResults.isEmpty() ? -1 : sqlResults.get(0).get(0, Integer.class);
-        for (Tuple sqlResult : sqlResults) {
-            Integer lemmaId = sqlResult.get(0, Integer.class);
-            Integer pageId = sqlResult.get(1, Integer.class);
-            if (lemmaId.equals(currentLemmaId)) {
-                if (prevPageIds == null || prevPageIds.contains(pageId)) {
-                    pageIds.add(pageId);
+        float maxRank = scores[0];
+        Set<Integer> resultPageIds = new HashSet<>();
+        for (int pageId : pageIds) {
+            resultPageIds.add(pageId);
+        }
+        HashMap<Integer, Page> pageHashMap = pageService.getPages(resultPageIds);
+        long timeout = TimeUnit.MILLISECONDS.toNanos(appProperties.getSearch().getSnippetTimeout());
+        long deadline = System.nanoTime() + timeout;
+        ArrayList<Page> pages = new ArrayList<>();
+        ArrayList<Future<JsonObject>> futures = new ArrayList<>();
+        for (int i = 0; i < pageIds.length; i++) {
+            Page page = pageHashMap.get(pageIds[i]);
+            if (page != null) {
+                page.setRelevance(scores[i] / maxRank);
+                pages.add(page);
+                Future<JsonObject> future;
+                try {
+                    future = snippetExecutor.submit(() -> getSearchItem(page, query, deadline));
+                } catch (RejectedExecutionException e) {
+                    future = null;
                 }
-            } else {
-                prevPageIds = pageIds;
-                pageIds = new HashSet<>();
-                if (prevPageIds.contains(pageId)) {
-                    pageIds.add(pageId);
+                futures.add(future);
+            }
+        }
+        for (int i = 0; i < futures.size(); i++) {
+            Future<JsonObject> future = futures.get(i);
+            JsonObject item;
+            try {
+                item = future == null ? null :
+                        future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (item == null) {
+                    item = getSearchItemHeader(pages.get(i));
+                    result.complete = false;
                 }
-                currentLemmaId = lemmaId;
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                item = getSearchItemHeader(pages.get(i));
+                result.complete = false;
+            } catch (ExecutionException e) {
+                System.err.println("Ошибка построения фрагмента текста страницы " + pages.get(i).getPath() + ": " +
+                        e.getCause());
+                item = getSearchItemHeader(pages.get(i));
+                result.complete = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                item = getSearchItemHeader(pages.get(i));
+                result.complete = false;
             }
+            result.items.add(item);
         }
-        return pageIds;
+        return result;
+    }
+
+    /**
+     * Поиск идентификаторов лемм, найденных в заданном запросе
+     * @param query текст запроса
+     * @return идентификаторы лемм
+     */
+    private ArrayList<Integer> findLemmaIdsInQuery(String query) {
+        HashSet<String> lemmaStrings = lemmaService.findLemmaStringsInText(query);
+        return lemmaService.findLemmaIds(lemmaStrings);
     }
 
     /**
-     * Фильтрация списка страниц по идентификатору сайта
      * @param siteUrl url сайта
-     * @param pageIds список страниц
-     * @return отфильтрованных список страниц
+     * @return сайт, null если сайт не задан или не найден
      */
-    private Set<Integer> filterPagesBySite(String siteUrl, Set<Integer> pageIds) {
+    private Site getSite(String siteUrl) {
         if (siteUrl == null || siteUrl.isEmpty()) {
-            return pageIds;
+            return null;
+        }
+        return siteService.getSite(siteUrl, false);
+    }
+
+    /**
+     * Получения элемента списка результатов поиска.
+     * <p> Заголовок и текст страницы сохраняются при индексации,
+     * HTML-код разбирается только для страниц, проиндексированных до появления этих полей.
+     * <p> Построение прекращается, если истекло время запроса или задача прервана
+     * @param page обьект страницы
+     * @param query текст поискового запроса
+     * @param deadline время окончания построения элементов запроса по System.nanoTime()
+     * @return данные для отображения элемента списка результатов поиска, null если построение прекращено
+     */
+    private JsonObject getSearchItem(Page page, String query, long deadline) {
+        if (System.nanoTime() - deadline >= 0 || Thread.currentThread().isInterrupted()) {
+            return null;
         }
-        Site site = siteService.getSite(siteUrl, false);
-        if (site == null) {
-            return pageIds;
+        try {
+            return buildSearchItem(page, query);
+        } catch (CancellationException e) {
+            return null;
         }
-        Set<Integer> sitePageIds = pageService.getPageIdsForSite(site.getId());
-        pageIds.removeIf(pageId -> !sitePageIds.contains(pageId));
-        return pageIds;
     }
 
     /**
-     * Получения элемента списка результатов поиска
+     * Построение элемента списка результатов поиска с фрагментом текста
      * @param page обьект страницы
      * @param query текст поискового запроса
      * @return данные для отображения элемента списка результатов поиска
      */
-    private JsonObject getSearchItem(Page page, String query) {
-        JsonObject result = new JsonObject();
-        result.put("site", page.getSite().getUrl());
-        result.put("siteName", page.getSite().getName());
-        result.put("uri", page.getPath());
-        Document document = Jsoup.parse(page.getContent());
-        Elements titleElements = document.select("title");
-        if (titleElements.size() > 0) {
-            Element title = titleElements.first();
-            if (title != null) {
-                result.put("title", title.text());
-            }
+    private JsonObject buildSearchItem(Page page, String query) {
+        JsonObject result = getSearchItemHeader(page);
+        String title = page.getTitle();
+        String body = page.getText();
+        String content = body == null ? pageContentService.getContent(page) : null;
+        if (content != null) {
+            Document document = Jsoup.parse(content);
+            checkInterrupted();
+            Element titleElement = document.selectFirst("title");
+            title = titleElement == null ? null : titleElement.text();
+            Element bodyElement = document.selectFirst("body");
+            body = bodyElement == null ? null : bodyElement.text();
         }
-        Elements bodyElements = document.select("body");
-        if (bodyElements.size() > 0) {
-            String body = Objects.requireNonNull(bodyElements.first()).text();
+        if (title != null) {
+            result.put("title", title);
+        }
+        if (body != null) {
             String bodyLowerCase = body.toLowerCase();
             String snippet = searchForSnippetInBody(body, bodyLowerCase, query);
             if (!snippet.isEmpty()) {
                 result.put("snippet", snippet);
             }
         }
+        return result;
+    }
+
+    /**
+     * Получение элемента списка результатов поиска без фрагмента текста
+     * @param page обьект страницы
+     * @return данные страницы: сайт, путь, сохраненный заголовок и релевантность
+     */
+    private JsonObject getSearchItemHeader(Page page) {
+        JsonObject result = new JsonObject();
+        result.put("site", page.getSite().getUrl());
+        result.put("siteName", page.getSite().getName());
+        result.put("uri", page.getPath());
+        if (page.getTitle() != null) {
+            result.put("title", page.getTitle());
+        }
         result.put("relevance", page.getRelevance());
         return result;
     }
@@ -195,6 +362,7 @@ public class SearchServiceImpl implements SearchService {
         }
         String fromEndToStart = query;
         while (!fromEndToStart.isEmpty()) { // перебор частей поискового запроса от конца к началу
+            checkInterrupted();
             int spacePos = fromEndToStart.lastIndexOf(" ");
             if (spacePos != -1) {
                 fromEndToStart = fromEndToStart.substring(0, spacePos);
@@ -208,6 +376,7 @@ public class SearchServiceImpl implements SearchService {
         }
         String fromStartToEnd = query;
         while (!fromStartToEnd.isEmpty()) { // перебор частей поискового запроса от начала к концу
+            checkInterrupted();
             int spacePos = fromStartToEnd.indexOf(" ");
             if (spacePos != -1) {
                 fromStartToEnd = fromStartToEnd.substring(spacePos + 1);
@@ -234,6 +403,7 @@ public class SearchServiceImpl implements SearchService {
         for (String word : words) {
             String wordPart = word;
             while (wordPart.length() > 1) {
+                checkInterrupted();
                 snippet = getSnippetFromBody(body, bodyLowerCase, wordPart);
                 if (snippet != null) {
                     return snippet;
@@ -245,6 +415,7 @@ public class SearchServiceImpl implements SearchService {
         for (String lemmaString : lemmaStrings) {
             String wordPart = lemmaString;
             while (wordPart.length() > 1) {
+                checkInterrupted();
                 snippet = getSnippetFromBody(body, bodyLowerCase, wordPart);
                 if (snippet != null) {
                     return snippet;
@@ -255,6 +426,15 @@ public class SearchServiceImpl implements SearchService {
         return "";
     }
 
+    /**
+     * Прерывание построения фрагмента текста, если задача отменена по истечении времени запроса
+     */
+    private static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Построение фрагмента текста прервано");
+        }
+    }
+
     /**
      * Поиск текста в теле вебстраницы по части поискового запроса
      * @param body текст элемента body вебстраницы
@@ -293,4 +473,14 @@ public class SearchServiceImpl implements SearchService {
         snippet = snippet.replaceAll(searchString, "<b>" + searchString + "</b>");
         return snippet;
     }
+
+    /**
+     * Элементы списка результатов поиска
+     */
+    private static class SearchItems {
+        // элементы списка результатов поиска
+        private final JsonArray items = new JsonArray();
+        // false если у части элементов не построен фрагмент текста
+        private boolean complete = true;
+    }
 }
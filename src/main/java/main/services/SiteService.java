@@ -3,11 +3,13 @@ package main.services;
 import com.github.cliftonlabs.json_simple.JsonObject;
 import main.model.*;
 import main.utils.bypass.BypassData;
+import main.utils.bypass.PageLemmas;
+import main.utils.bypass.fetch.PageValidators;
 import org.jsoup.nodes.Document;
-import org.springframework.data.repository.query.Param;
+import org.jsoup.select.NodeVisitor;
 
-import javax.persistence.Tuple;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public interface SiteService {
     /**
@@ -41,20 +43,38 @@ public interface SiteService {
      */
     JsonObject getSitesData();
     /**
-     * Сахранение данных о странице в базе,
-     * вызывается из утилиты обхода страниц сайта
+     * Сахранение данных о странице и найденных на ней леммах в базе,
+     * вызывается из утилиты обхода страниц сайта, запись выполняется асинхронно в очереди записи
      * @param site обьект сайта
      * @param data данные результатов сканирования страницы
-     * @return идентификатор сохраненной страницы, -1 если страницу не удалось сохранить
+     * @return идентификатор сохраненной страницы после записи, -1 если страницу не удалось сохранить
+     */
+    CompletableFuture<Integer> savePage(Site site, BypassData data);
+    /**
+     * Отметка страницы как найденной при обходе сайта, страницы сайта, не найденные за время обхода,
+     * удаляются после его окончания. Вызывается из утилиты обхода страниц сайта
+     * @param site обьект сайта
+     * @param path путь к странице на сайте
+     * @return хеш контента и валидаторы HTTP страницы, сохраненные при прошлом обходе,
+     * null если страница не была сохранена или обход сайта не выполняется
+     */
+    PageValidators visitPage(Site site, String path);
+    /**
+     * Получение ссылок неизменившейся страницы, сохраненных при прошлом обходе,
+     * вызывается из утилиты обхода страниц сайта
+     * @param site обьект сайта
+     * @param path путь к странице на сайте
+     * @return пути к "дочерним" страницам, null если ссылки не сохранены
      */
-    int savePage(Site site, BypassData data);
+    Set<String> getPageLinks(Site site, String path);
     /**
      * Получение лемм из обьекта содержащего иходных код страницы,
      * вызывается из утилиты обхода страниц сайта
      * @param document обьект содержащий иходных код страницы
-     * @param pageId идентификатор страницы
+     * @param listener обработчик узлов документа, вызываемый в том же обходе DOM, может быть null
+     * @return леммы страницы и их ранги
      */
-    void scanLemmas(Document document, int pageId);
+    PageLemmas scanLemmas(Document document, NodeVisitor listener);
     /**
      * Установка ошибки индексации сайта,
      * вызывается из утилиты обхода страниц сайта
@@ -8,18 +8,25 @@ import main.model.SiteRepository;
 import main.model.SiteStatus;
 import main.utils.bypass.BypassCalculator;
 import main.utils.bypass.BypassData;
+import main.utils.bypass.BypassEngine;
+import main.utils.bypass.PageLemmas;
+import main.utils.bypass.SavedPages;
+import main.utils.bypass.SiteFrontier;
+import main.utils.bypass.fetch.PageFetcher;
+import main.utils.bypass.fetch.PageValidators;
+import main.utils.index.SiteCounters;
 import org.jsoup.nodes.Document;
+import org.jsoup.select.NodeVisitor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
-import javax.persistence.Tuple;
-import java.math.BigInteger;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.*;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Сервис для работы с данными из таблицы site
@@ -36,25 +43,41 @@ public class SiteServiceImpl implements SiteService {
     // ссылка на обьект для доступа к сервису лемм
     @Autowired
     private LemmaService lemmaService;
-    // ссылка на обьект для доступа к сервису индексов
+    // ссылка на обьект для доступа к сервису записи проиндексированных страниц
     @Autowired
-    private IndexService indexService;
+    private IndexWriterService indexWriterService;
+    // ссылка на обьект для доступа к сервису сжатия контента страниц
+    @Autowired
+    private PageContentService pageContentService;
+    // ссылка на обьект для доступа к сервису статистики сайтов
+    @Autowired
+    private SiteStatsService siteStatsService;
+    // ссылка на обьект для доступа к сервису поиска
+    @Autowired
+    private SearchService searchService;
     // настройки приложения из application.yml
     @Autowired
     private ApplicationProps appProperties;
+    // минимальный интервал обновления времени статуса сайта во время индексации, сек
+    private static final long STATUS_UPDATE_INTERVAL_SEC = 5;
+    // минимальная доля сохраненных страниц, найденных при обходе, при которой удаляются ненайденные страницы
+    private static final double MIN_VISITED_PAGES_SHARE = 0.1;
     // статус индексации поискового движка
     private volatile boolean indexing = false;
     // потоки индексации сайтов
     private final ArrayList<Thread> indexSiteThreads = new ArrayList<>();
+    // страницы, сохраненные до начала обхода сайтов и ещё не найденные при обходе:
+    // идентификатор сайта -> хеши путей и идентификаторы страниц
+    private final ConcurrentHashMap<Integer, SavedPages> unvisitedPages = new ConcurrentHashMap<>();
 
     /**
      * метод инициализации сервиса,
      * вызывается после коннекта к БД до начала работы контроллеров,
-     * задает параметр userAgent для поиска и обработчик события остановки индексации
+     * задает обьект загрузки страниц и обработчик события остановки индексации
      */
     @PostConstruct
     public void initialize() {
-        BypassCalculator.setUserAgent(appProperties.getUserAgent());
+        BypassCalculator.setPageFetcher(PageFetcher.create(appProperties.getCrawler(), appProperties.getUserAgent()));
         // когда общая индексация останавливается - запускаем потоки индексации отдельных сайтов,
         // которые находся в режиме ожидания
         BypassCalculator.listenForStopIndexing(value -> {
@@ -89,11 +112,13 @@ public class SiteServiceImpl implements SiteService {
         new Thread(() -> {
             List<Map<String, String>> sites = appProperties.getSites();
             ArrayList<Thread> threads = new ArrayList<>();
+            BypassEngine engine = new BypassEngine(this, appProperties.getCrawler());
             for(Map<String, String> siteData : sites) {
                 Site site = getSite(siteData.get("url"), true);
                 site.setName(siteData.get("name"));
-                threads.add(scanSite(site));
+                threads.add(scanSite(site, engine, getCrawlDelay(siteData)));
             }
+            engine.start();
             for(Thread thread : threads) {
                 try {
                     thread.join();
@@ -149,10 +174,10 @@ public class SiteServiceImpl implements SiteService {
     public JsonObject getSitesData() {
         JsonObject root = new JsonObject();
         JsonObject total = new JsonObject();
-        total.put("sites", getNumSites());
-        total.put("pages", pageService.getNumPages());
+        total.put("pages", siteStatsService.getTotalPages());
         total.put("lemmas", lemmaService.getNumLemmas());
         total.put("isIndexing", indexing);
+        total.put("content", pageContentService.getStats());
         root.put("total", total);
         JsonArray detailed = new JsonArray();
         List<Map<String, String>> siteDatas = appProperties.getSites();
@@ -160,13 +185,13 @@ public class SiteServiceImpl implements SiteService {
         for(Map<String, String> siteData : siteDatas) {
             urls.add(siteData.get("url"));
         }
-        Iterable<Tuple> stats = siteRepository.getSitesStats();
-        HashMap<Integer, Tuple> siteStats = new HashMap<>();
-        for (Tuple stat : stats) {
-            siteStats.put(stat.get(0, Integer.class), stat);
+        Iterable<Site> sites;
+        synchronized (this) {
+            sites = siteRepository.findByUrlIn(urls);
         }
-        Iterable<Site> sites = siteRepository.findByUrlIn(urls);
+        int sitesCount = 0;
         for (Site site : sites) {
+            sitesCount++;
             JsonObject siteInfo = new JsonObject();
             siteInfo.put("url", site.getUrl());
             siteInfo.put("name", site.getName());
@@ -176,22 +201,55 @@ public class SiteServiceImpl implements SiteService {
             if (site.getLastError() != null) {
                 siteInfo.put("error", site.getLastError());
             }
-            Tuple siteStat = siteStats.get(site.getId());
-            siteInfo.put("lemmas", siteStat != null ? siteStat.get(1, BigInteger.class).intValue() : 0);
-            siteInfo.put("pages", siteStat != null ? siteStat.get(2, BigInteger.class).intValue() : 0);
+            // счетчики статистики хранятся в памяти, запросы к таблицам page и index не выполняются
+            SiteCounters counters = siteStatsService.getSiteCounters(site.getId());
+            siteInfo.put("pages", counters != null ? counters.getPages() : 0);
+            siteInfo.put("lemmas", counters != null ? counters.getLemmas() : 0);
+            siteInfo.put("indexes", counters != null ? counters.getIndexes() : 0);
             detailed.add(siteInfo);
         }
+        total.put("sites", sitesCount);
         root.put("detailed", detailed);
+        JsonObject metrics = new JsonObject();
+        metrics.put("lemmaCache", lemmaService.getCacheStats());
+        metrics.put("pageProcessing", BypassCalculator.getMemoryStats());
+        metrics.put("searchCache", searchService.getCacheStats());
+        root.put("metrics", metrics);
         return root;
     }
 
-    public int savePage(Site site, BypassData data) {
-        updateSiteStatus(site, SiteStatus.INDEXING);
-        return pageService.savePage(site, data);
+    public CompletableFuture<Integer> savePage(Site site, BypassData data) {
+        if (site.getStatus() != SiteStatus.INDEXING ||
+                site.getStatusTime().isBefore(LocalDateTime.now().minusSeconds(STATUS_UPDATE_INTERVAL_SEC))) {
+            updateSiteStatus(site, SiteStatus.INDEXING);
+        }
+        pageContentService.encodeContent(data);
+        return indexWriterService.submit(site, data);
+    }
+
+    public PageValidators visitPage(Site site, String path) {
+        SavedPages pages = unvisitedPages.get(site.getId());
+        int pageId = pages == null ? 0 : pages.visit(path);
+        // признаки версии загружаются только для найденных сохраненных страниц
+        return pageId == 0 ? null : pageService.getPageValidators(pageId, path);
+    }
+
+    public Set<String> getPageLinks(Site site, String path) {
+        String links = pageService.getPageLinks(site.getId(), path);
+        if (links == null) {
+            return null;
+        }
+        HashSet<String> result = new HashSet<>();
+        for (String link : links.split("\n")) {
+            if (!link.isEmpty()) {
+                result.add(link);
+            }
+        }
+        return result;
     }
 
-    public void scanLemmas(Document document, int pageId) {
-        lemmaService.processDocumentInPage(document, pageId);
+    public PageLemmas scanLemmas(Document document, NodeVisitor listener) {
+        return lemmaService.scanDocument(document, listener);
     }
 
     public void setSiteError(Site site, String error) {
@@ -206,6 +264,7 @@ public class SiteServiceImpl implements SiteService {
         synchronized (this) {
             siteRepository.deleteSite(siteId);
         }
+        siteStatsService.removeSite(siteId);
     }
 
     /**
@@ -216,31 +275,68 @@ public class SiteServiceImpl implements SiteService {
     }
 
     /**
-     * Очистка данных по вебсайту, запускается перед индексацией
+     * Удаление всех страниц сайта вместе с их индексами
      * @param site обьект сайта
      */
     private void clearSiteData(Site site) {
-        Set<Integer> pageIds = pageService.getPageIdsForSite(site.getId());
-        Set<Integer> lemmaIds = indexService.getLemmaIdsForPageIds(pageIds);
-        lemmaService.cleanUpLemmas(lemmaIds);
-        indexService.deleteIndexesForPages(pageIds);
-        pageService.deletePagesForSite(site.getId());
+        indexWriterService.removePages(site.getId(), pageService.getPageIdsForSite(site.getId()));
+    }
+
+    /**
+     * Удаление страниц сайта, которые не были найдены при обходе
+     * @param site обьект сайта
+     * @param pageIds идентификаторы страниц
+     */
+    private void removeUnvisitedPages(Site site, Set<Integer> pageIds) {
+        if (pageIds.isEmpty()) {
+            return;
+        }
+        indexWriterService.removePages(site.getId(), pageIds);
+        System.out.println("Удалено страниц, не найденных при обходе сайта " + site.getUrl() + ": " + pageIds.size());
     }
 
     /**
-     * Создание потока индексации сайта
+     * Создание потока индексации сайта.
+     * <p> Данные сайта не удаляются перед обходом: неизменившиеся страницы не индексируются повторно,
+     * для изменившихся записываются только изменения индексов, после полного обхода
+     * удаляются страницы, которые больше не найдены на сайте. Если обход завершился ошибкой
+     * или найдена лишь малая часть сохраненных страниц, страницы не удаляются
      * @param site обьект сайта
-     * @return созданный поток
+     * @param engine движок обхода страниц сайтов
+     * @param crawlDelayMs минимальный интервал между загрузками страниц сайта, мс
+     * @return созданный поток, ожидающий окончания обхода сайта
      */
-    private Thread scanSite(Site site) {
-        clearSiteData(site);
+    private Thread scanSite(Site site, BypassEngine engine, long crawlDelayMs) {
+        SavedPages savedPages = pageService.getSavedPages(site.getId());
+        int savedPagesCount = savedPages.size();
+        unvisitedPages.put(site.getId(), savedPages);
         updateSiteStatus(site, SiteStatus.INDEXING);
+        SiteFrontier frontier = engine.addSite(site, crawlDelayMs);
         Thread thread = new Thread(() -> {
             long start = System.currentTimeMillis();
-            ForkJoinPool jp = new ForkJoinPool();
-            jp.invoke(new BypassCalculator(site, this));
+            try {
+                frontier.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
             System.out.println("Добавление страниц в базу для сайта " + site.getUrl() + " завершено." +
                     " Общее время: " + ((System.currentTimeMillis() - start) / 1000) + " sec.");
+            System.out.println("Сжатие контента страниц: " + pageContentService.getStats().toJson());
+            if (frontier.getError() != null) {
+                setSiteError(site, frontier.getError());
+            }
+            SavedPages pages = unvisitedPages.remove(site.getId());
+            // после остановки индексации или ошибки обхода не найденные страницы могли просто не успеть загрузить
+            if (pages != null && !BypassCalculator.getStopIndexing() && site.getStatus() != SiteStatus.FAILED) {
+                int visitedPagesCount = savedPagesCount - pages.getUnvisitedCount();
+                if (visitedPagesCount >= savedPagesCount * MIN_VISITED_PAGES_SHARE) {
+                    removeUnvisitedPages(site, pages.getUnvisitedPageIds());
+                } else {
+                    System.out.println("При обходе сайта " + site.getUrl() + " найдено " +
+                            visitedPagesCount + " из " + savedPagesCount +
+                            " сохраненных страниц, ненайденные страницы не удаляются");
+                }
+            }
             if (site.getStatus() == SiteStatus.INDEXING) {
                 updateSiteStatus(site, SiteStatus.INDEXED);
             }
@@ -249,6 +345,15 @@ public class SiteServiceImpl implements SiteService {
         return thread;
     }
 
+    /**
+     * @param siteData настройки сайта из application.yml
+     * @return минимальный интервал между загрузками страниц сайта, мс
+     */
+    private long getCrawlDelay(Map<String, String> siteData) {
+        String crawlDelay = siteData.get("crawl-delay");
+        return crawlDelay == null ? appProperties.getCrawler().getCrawlDelay() : Long.parseLong(crawlDelay);
+    }
+
     /**
      * Обновление статуса индексации сайта в таблице
      * @param site обьект сайта
@@ -262,17 +367,6 @@ public class SiteServiceImpl implements SiteService {
         }
     }
 
-    /**
-     * @return количество проиндексированных сайтов
-     */
-    private long getNumSites() {
-        long result;
-        synchronized (this) {
-            result = siteRepository.getNumSites();
-        }
-        return result;
-    }
-
     /**
      * Запуск потоков, ожидающих в очереди на индексацию
      */
@@ -0,0 +1,66 @@
+package main.services;
+
+import main.utils.index.SiteCounters;
+
+import java.util.Collection;
+import java.util.Map;
+
+public interface SiteStatsService {
+    /**
+     * Загрузчик счетчиков, заполняется при загрузке обратного индекса из таблицы index
+     */
+    interface Loader {
+        /**
+         * Учет записи таблицы index
+         * @param siteId идентификатор сайта страницы
+         * @param lemmaId идентификатор леммы
+         */
+        void addIndex(int siteId, int lemmaId);
+
+        /**
+         * Замена счетчиков загруженными значениями
+         */
+        void finish();
+    }
+
+    /**
+     * Начало загрузки счетчиков
+     * @param pageSites идентификаторы сайтов всех страниц: идентификатор страницы -> идентификатор сайта
+     * @return загрузчик, которому передаются все записи таблицы index
+     */
+    Loader startLoading(Map<Integer, Integer> pageSites);
+
+    /**
+     * Учет записанной страницы, вызывается после записи страницы в базу
+     * @param siteId идентификатор сайта
+     * @param created true если страница добавлена в базу
+     * @param addedLemmaIds идентификаторы лемм, появившихся на странице
+     * @param removedLemmaIds идентификаторы лемм, которых больше нет на странице
+     */
+    void pageSaved(int siteId, boolean created, Collection<Integer> addedLemmaIds, Collection<Integer> removedLemmaIds);
+
+    /**
+     * Учет удаленных страниц, вызывается после удаления страниц из базы
+     * @param siteId идентификатор сайта
+     * @param pagesCount количество удаленных страниц
+     * @param lemmaPagesCounts количество удаленных страниц для каждой леммы: идентификатор леммы -> количество
+     */
+    void pagesRemoved(int siteId, int pagesCount, Map<Integer, Integer> lemmaPagesCounts);
+
+    /**
+     * Удаление счетчиков сайта
+     * @param siteId идентификатор сайта
+     */
+    void removeSite(int siteId);
+
+    /**
+     * @param siteId идентификатор сайта
+     * @return счетчики сайта, null если у сайта нет страниц
+     */
+    SiteCounters getSiteCounters(int siteId);
+
+    /**
+     * @return общее количество страниц всех сайтов
+     */
+    long getTotalPages();
+}
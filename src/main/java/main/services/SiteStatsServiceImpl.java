@@ -0,0 +1,82 @@
+package main.services;
+
+import main.utils.index.SiteCounters;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Сервис статистики сайтов: количество страниц, лемм и индексов каждого сайта.
+ * <p> Счетчики хранятся в памяти и изменяются сервисом записи страниц после каждой записи и удаления,
+ * поэтому статистика не требует запросов к таблице index. При запуске счетчики заполняются
+ * во время загрузки обратного индекса, который всё равно читает всю таблицу index,
+ * поэтому счетчики в базе не сохраняются
+ */
+@Service
+public class SiteStatsServiceImpl implements SiteStatsService {
+    // обьект для выполнения запросов к БД
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    // счетчики сайтов по идентификаторам сайтов
+    private final ConcurrentHashMap<Integer, SiteCounters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * метод инициализации сервиса, вызывается после коннекта к БД до начала работы контроллеров,
+     * удаляет таблицу site_stats, в которую сохранялись счетчики в прежних версиях
+     */
+    @PostConstruct
+    public void initialize() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS site_stats");
+    }
+
+    public Loader startLoading(Map<Integer, Integer> pageSites) {
+        HashMap<Integer, SiteCounters> loaded = new HashMap<>();
+        pageSites.values().forEach(siteId -> loaded.computeIfAbsent(siteId, k -> new SiteCounters()).addPages(1));
+        return new Loader() {
+            public void addIndex(int siteId, int lemmaId) {
+                loaded.get(siteId).addLemmaPages(lemmaId, 1);
+            }
+
+            public void finish() {
+                counters.clear();
+                counters.putAll(loaded);
+            }
+        };
+    }
+
+    public void pageSaved(int siteId, boolean created, Collection<Integer> addedLemmaIds,
+                          Collection<Integer> removedLemmaIds) {
+        SiteCounters siteCounters = counters.computeIfAbsent(siteId, k -> new SiteCounters());
+        if (created) {
+            siteCounters.addPages(1);
+        }
+        addedLemmaIds.forEach(lemmaId -> siteCounters.addLemmaPages(lemmaId, 1));
+        removedLemmaIds.forEach(lemmaId -> siteCounters.addLemmaPages(lemmaId, -1));
+    }
+
+    public void pagesRemoved(int siteId, int pagesCount, Map<Integer, Integer> lemmaPagesCounts) {
+        SiteCounters siteCounters = counters.computeIfAbsent(siteId, k -> new SiteCounters());
+        siteCounters.addPages(-pagesCount);
+        lemmaPagesCounts.forEach((lemmaId, count) -> siteCounters.addLemmaPages(lemmaId, -count));
+    }
+
+    public void removeSite(int siteId) {
+        counters.remove(siteId);
+    }
+
+    public SiteCounters getSiteCounters(int siteId) {
+        return counters.get(siteId);
+    }
+
+    public long getTotalPages() {
+        long result = 0;
+        for (SiteCounters siteCounters : counters.values()) {
+            result += siteCounters.getPages();
+        }
+        return result;
+    }
+}
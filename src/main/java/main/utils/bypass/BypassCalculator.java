@@ -1,23 +1,30 @@
 package main.utils.bypass;
 
+import com.github.cliftonlabs.json_simple.JsonObject;
 import main.model.*;
 import main.services.SiteService;
+import main.utils.bypass.fetch.FetchResult;
+import main.utils.bypass.fetch.PageFetcher;
+import main.utils.bypass.fetch.PageValidators;
+import main.utils.content.ContentHash;
 import main.utils.event.CustomEvent;
 import main.utils.event.CustomEventListener;
-import org.jsoup.Connection;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
-import org.jsoup.select.Elements;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
-import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 /**
- * Утилита обхода страниц сайта,
- * использует механизм Fork-Join для создания потоков для параллельной индексации страниц сайта
+ * Утилита обработки страницы сайта:
+ * загружает контент страницы, запускает её индексацию и находит ссылки на "дочерние" страницы,
+ * обход всего сайта выполняет {@link BypassEngine}
  */
-public class BypassCalculator extends RecursiveTask<Void> {
+public class BypassCalculator {
     // данные результатов сканирования страницы
     private final BypassData data;
     // обьект с данными сайта
@@ -25,22 +32,30 @@ public class BypassCalculator extends RecursiveTask<Void> {
     // ссылка на обьект для доступа к сервису сайтов
     private final SiteService siteService;
 
-    // значение user agent, используемое для загрузки контента страницы
-    private static String userAgent;
+    // обьект для загрузки контента страниц
+    private static PageFetcher pageFetcher;
     // флаг остановки общей индексации страниц
     private static volatile boolean stopIndexing = false;
 
     // обьект для вызова события остановки индексации
     private static final CustomEvent stopIndexingChanged = new CustomEvent();
     // список найденных на странице ссылок на другие страницы
-    HashSet<String> links = new HashSet<>();
+    private final HashSet<String> links = new HashSet<>();
+    // признаки версии страницы с прошлого обхода сайта, null если страница загружается впервые
+    private PageValidators savedVersion;
+    // true если страница не изменилась, но её ссылки не сохранены и её нужно загрузить повторно без условного запроса
+    private boolean refetchRequired;
+    // максимальная длина сохраняемых значений заголовков ETag и Last-Modified
+    private static final int MAX_VALIDATOR_LENGTH = 255;
+    // статистика памяти, используемой при обработке страниц
+    private static final PageMemoryStats memoryStats = new PageMemoryStats();
 
     /**
-     * Установка значения user agent, используемого для загрузки контента страницы
-     * @param value значение user agent
+     * Установка обьекта, используемого для загрузки контента страниц
+     * @param value обьект для загрузки контента страниц
      */
-    public static void setUserAgent(String value) {
-        userAgent = value;
+    public static void setPageFetcher(PageFetcher value) {
+        pageFetcher = value;
     }
 
     /**
@@ -60,28 +75,22 @@ public class BypassCalculator extends RecursiveTask<Void> {
     }
 
     /**
-     * Подписка на событие остановки индексации
-     * @param listener обьект, который подписывается на событие
+     * @return статистика памяти, используемой при обработке страниц
      */
-    public static void listenForStopIndexing(CustomEventListener listener) {
-        stopIndexingChanged.addListener(listener);
+    public static JsonObject getMemoryStats() {
+        return memoryStats.toJson();
     }
 
     /**
-     * Индексация всего сайта
-     * @param site обьект с данными сайта
-     * @param siteService ссылка на обьект для доступа к сервису сайтов
+     * Подписка на событие остановки индексации
+     * @param listener обьект, который подписывается на событие
      */
-    public BypassCalculator(Site site, SiteService siteService) {
-        this.site = site;
-        this.siteService = siteService;
-        this.data = new BypassData();
-        data.setPath("/");
-        this.site.addPage(this.data.getPath());
+    public static void listenForStopIndexing(CustomEventListener listener) {
+        stopIndexingChanged.addListener(listener);
     }
 
     /**
-     * Индексация страницы на сайте (из цикла потоков)
+     * Индексация страницы на сайте (из потоков обхода сайта)
      * @param site обьект с данными сайта
      * @param siteService ссылка на обьект для доступа к сервису сайтов
      * @param data данные результатов сканирования страницы
@@ -105,118 +114,193 @@ public class BypassCalculator extends RecursiveTask<Void> {
         data.setPath(pageUrl.substring(site.getUrl().length()));
         if (data.getPath().isEmpty())
             data.setPath("/");
-        this.site.addPage(this.data.getPath());
     }
 
     /**
-     * Запуск процесса индексации страницы,
-     * последующий поиск "дочерних" страниц и запуск потоков для их индексации
-     * @return метод должен иметь возвращаемое значение, используем Void т.к. ничего считать здесь не нужно
+     * @return список путей к "дочерним" страницам, найденных на этой странице,
+     * без параметров запроса и ссылок внутри страницы
      */
-    @Override
-    protected Void compute() {
-        if(stopIndexing) {
-            return null;
-        }
-        findPageChildren();
-        List<BypassCalculator> taskList = new ArrayList<>();
-        for (BypassData child : data.getChildren()) {
-            BypassCalculator task = new BypassCalculator(site, siteService, child);
-            task.fork();
-            taskList.add(task);
-        }
-        for(BypassCalculator task : taskList) {
-            task.join();
+    public HashSet<String> getChildPaths() {
+        HashSet<String> paths = new HashSet<>();
+        for (String link : links) {
+            paths.add(removeQueryFromLink(link));
         }
-        return null;
+        return paths;
     }
 
     /**
-     * Загрузка контента страницы, запуск индексации, и поиск "дочерних" страниц
+     * @return true если страница не изменилась, но её ссылки не сохранены,
+     * страницу нужно загрузить повторно без условного запроса
      */
-    private void findPageChildren() {
-        try {
-            Thread.sleep(500 + new Random().nextInt(2000));
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }
-        loadAndProcessPage();
-        for (String link : links) {
-            String linkWithoutQuery = removeQueryFromLink(link);
-            if (!linkWithoutQuery.equals(site.getUrl()) && !site.getAllPages().contains(linkWithoutQuery)) {
-                site.addPage(linkWithoutQuery);
-                BypassData newData = new BypassData();
-                newData.setPath(linkWithoutQuery);
-                data.addChild(newData);
-            }
-        }
+    public boolean isRefetchRequired() {
+        return refetchRequired;
     }
 
     /**
-     * Загрузка контента страницы и запуск индексации
+     * Загрузка контента страницы и запуск индексации,
+     * метод возвращает управление после окончания индексации страницы
      */
     public void loadAndProcessPage() {
         if (stopIndexing) {
             return;
         }
-        String address = site.getUrl() + data.getPath();
+        try {
+            processPage(loadPage().join()).join();
+            if (refetchRequired) {
+                processPage(pageFetcher.fetch(site.getUrl() + data.getPath(), null).join()).join();
+            }
+        } catch (CompletionException ex) {
+            processError(ex);
+        }
+    }
 
+    /**
+     * Асинхронная загрузка контента страницы, если страница была сохранена при прошлом обходе сайта -
+     * отправляется условный запрос с её валидаторами
+     * @return результат загрузки страницы
+     */
+    public CompletableFuture<FetchResult> loadPage() {
+        String address = site.getUrl() + data.getPath();
         System.out.println("Загружаем код страницы " + address);
-        Connection connection = loadPage(address);
-        Document document;
-        try {
-            document = connection.get();
-            int statusCode = connection.response().statusCode();
-            data.setStatusCode(statusCode);
-            if (statusCode < 400) { // not error
-                findLinks(document);
-                data.setContent(document.toString()); // set content before saving page
-                int pageId = siteService.savePage(site, data);
-                data.setContent(null); // unset content to free memory
-                if (!stopIndexing && pageId > 0) {
-                    System.out.println("Обрабатываем леммы для страницы " + address);
-                    siteService.scanLemmas(document, pageId);
-                    System.out.println("Обработка лемм для страницы " + address + " завершена");
-                }
-            } else {
-                siteService.savePage(site, data);
+        savedVersion = siteService.visitPage(site, data.getPath());
+        return pageFetcher.fetch(address, savedVersion);
+    }
+
+    /**
+     * Разбор загруженной страницы, поиск ссылок на "дочерние" страницы и лемм,
+     * сохранение страницы и лемм в базе выполняется асинхронно в очереди записи.
+     * <p> Если страница не изменилась с прошлого обхода (код 304 или тот же хеш контента),
+     * она не разбирается и не индексируется, ссылки на "дочерние" страницы берутся из сохраненных,
+     * если ссылки не сохранены - страница отмечается для повторной загрузки без условного запроса
+     * ({@link #isRefetchRequired()}), повторную загрузку выполняет вызывающий код.
+     * <p> Сохраняется загруженный контент страницы, ссылки, заголовок, текст и леммы собираются за один обход DOM,
+     * документ освобождается до постановки страницы в очередь записи
+     * @param result результат загрузки страницы
+     * @return идентификатор сохраненной страницы после записи в базу, -1 если страница не сохранена
+     */
+    public CompletableFuture<Integer> processPage(FetchResult result) {
+        if (stopIndexing) {
+            return CompletableFuture.completedFuture(-1);
+        }
+        String address = site.getUrl() + data.getPath();
+        if (result.isNotModified()) {
+            if (addSavedLinks()) {
+                System.out.println("Страница " + address + " не изменилась (304)");
+                return CompletableFuture.completedFuture(-1);
             }
+            if (savedVersion == null) {
+                // ответ 304 на безусловный запрос, повторная загрузка ничего не изменит
+                System.out.println("Пропускаем страницу " + address + ", код ответа 304 без условного запроса");
+                return CompletableFuture.completedFuture(-1);
+            }
+            // ссылки страницы не сохранены: её нужно загрузить полностью, чтобы найти "дочерние" страницы
+            System.out.println("Страница " + address + " не изменилась (304), но ссылки не сохранены");
+            savedVersion = null;
+            refetchRequired = true;
+            return CompletableFuture.completedFuture(-1);
+        }
+        refetchRequired = false;
+        int statusCode = result.getStatusCode();
+        data.setStatusCode(statusCode);
+        if (statusCode >= 400) {
+            return siteService.savePage(site, data);
+        }
+        if (!result.isHtml()) {
+            System.out.println("Пропускаем страницу " + address + ", тип контента: " + result.getContentType());
+            return CompletableFuture.completedFuture(-1);
+        }
+        if (result.isTooLarge()) {
+            System.out.println("Пропускаем страницу " + address + ", размер больше максимального");
+            memoryStats.addSkipped();
+            return CompletableFuture.completedFuture(-1);
+        }
+        data.setContentHash(ContentHash.of(result.getBody()));
+        if (savedVersion != null && data.getContentHash().equals(savedVersion.getContentHash()) && addSavedLinks()) {
+            System.out.println("Страница " + address + " не изменилась");
+            return CompletableFuture.completedFuture(-1);
+        }
+        data.setEtag(getValidator(result.getEtag()));
+        data.setLastModified(getValidator(result.getLastModified()));
+        long startAllocatedBytes = PageMemoryStats.getThreadAllocatedBytes();
+        try {
+            scanPage(result, address);
         } catch (IOException e) {
             siteService.setSiteError(site, e.getLocalizedMessage());
+            return CompletableFuture.completedFuture(-1);
+        }
+        memoryStats.addPage(result.getBody().length, startAllocatedBytes);
+        if (stopIndexing) {
+            return CompletableFuture.completedFuture(-1);
         }
+        data.setContentData(result.getBody());
+        result.setBody(null);
+        return siteService.savePage(site, data);
     }
 
     /**
-     * Загрузка контента страницы
+     * Разбор загруженной страницы и поиск ссылок, заголовка, текста и лемм за один обход DOM,
+     * документ доступен только внутри метода и освобождается после его завершения
+     * @param result результат загрузки страницы
      * @param address адрес страницы
-     * @return обьект, который используем чтобы получить статус код и доступ к контенту
+     * @throws IOException если контент страницы не удалось разобрать
+     */
+    private void scanPage(FetchResult result, String address) throws IOException {
+        Document document = Jsoup.parse(new ByteArrayInputStream(result.getBody()), result.getCharset(), address);
+        data.setContentCharset(document.charset().name());
+        System.out.println("Обрабатываем леммы для страницы " + address);
+        PageTextCollector collector = new PageTextCollector();
+        data.setLemmas(siteService.scanLemmas(document, collector));
+        links.addAll(filterLinks(collector.getLinks()));
+        data.setLinks(String.join("\n", getChildPaths()));
+        data.setTitle(collector.getTitle());
+        data.setText(collector.getText());
+    }
+
+    /**
+     * Обработка ошибки загрузки или индексации страницы
+     * @param error ошибка
      */
-    private Connection loadPage(String address) {
-        return Jsoup.connect(address)
-                .userAgent(userAgent)
-                .referrer("http://www.google.com");
+    public void processError(Throwable error) {
+        while ((error instanceof CompletionException || error instanceof UncheckedIOException) &&
+                error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof IOException) {
+            siteService.setSiteError(site, error.getLocalizedMessage());
+        } else {
+            System.err.println("Ошибка обработки страницы " + site.getUrl() + data.getPath() + ": " + error);
+        }
     }
 
     /**
-     * Поиск тегов со ссылками на "дочерние" страницы на этой странице
-     * @param document обьект с текстом вебстраницы
+     * Добавление ссылок на "дочерние" страницы, сохраненных при прошлом обходе
+     * @return false если ссылки не сохранены
      */
-    private void findLinks(Document document) {
-        String[] linkTags = { "a", "link" };
-        for (String tag : linkTags) {
-            links.addAll(findLinksInElements(document.select(tag)));
+    private boolean addSavedLinks() {
+        Set<String> savedLinks = siteService.getPageLinks(site, data.getPath());
+        if (savedLinks == null) {
+            return false;
         }
+        links.addAll(savedLinks);
+        return true;
+    }
+
+    /**
+     * @param value значение заголовка ETag или Last-Modified
+     * @return значение для сохранения, null если оно не задано или слишком длинное
+     */
+    private static String getValidator(String value) {
+        return value == null || value.length() > MAX_VALIDATOR_LENGTH ? null : value;
     }
 
     /**
-     * Поиск ссылок на "дочерние" страницы на этой странице
-     * @param elements элементы вебстраницы
+     * Поиск ссылок на "дочерние" страницы среди ссылок тегов a и link на этой странице
+     * @param hrefs значения атрибута href тегов a и link
      * @return список ссылок на "дочерние" страницы
      */
-    private HashSet<String> findLinksInElements(Elements elements) {
+    private HashSet<String> filterLinks(Collection<String> hrefs) {
         HashSet<String> links = new HashSet<>();
-        elements.forEach((el) -> {
-            String href = el.attr("href");
+        hrefs.forEach((href) -> {
             if (href.lastIndexOf('.') != -1 && href.lastIndexOf('.') > href.lastIndexOf('/')) {
                 String ext = href.substring(href.lastIndexOf('.'));
                 if (!ext.equals(".html")) {
@@ -2,8 +2,6 @@ package main.utils.bypass;
 
 import lombok.Data;
 
-import java.util.ArrayList;
-
 /**
  * Данные результатов сканирования страницы
  */
@@ -13,16 +11,24 @@ public class BypassData {
     private String path;
     // HTTP status code полученный при попытке загрузки страницы
     private int statusCode;
-    // контент страницы
-    private String content;
-    // список "дочерних" страниц, url которых найдены на этой странице
-    private ArrayList<BypassData> children = new ArrayList<>();
-
-    /**
-     * Добавление "дочерней" страницы
-     * @param data данные результатов сканирования страницы
-     */
-    public void addChild(BypassData data) {
-        children.add(data);
-    }
+    // загруженный контент страницы в исходной кодировке, после кодирования - сжатый контент
+    private byte[] contentData;
+    // кодировка загруженного контента страницы
+    private String contentCharset;
+    // способ сжатия контента страницы
+    private String contentCodec;
+    // хеш загруженного контента страницы
+    private String contentHash;
+    // значение заголовка ETag
+    private String etag;
+    // значение заголовка Last-Modified
+    private String lastModified;
+    // пути к "дочерним" страницам, найденные на странице, по одному в строке
+    private String links;
+    // заголовок страницы
+    private String title;
+    // текст элемента body страницы
+    private String text;
+    // найденные на странице леммы и их ранги
+    private PageLemmas lemmas;
 }
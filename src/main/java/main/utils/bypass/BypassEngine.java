@@ -0,0 +1,239 @@
+package main.utils.bypass;
+
+import main.model.ApplicationProps;
+import main.model.Site;
+import main.services.SiteService;
+import main.utils.bypass.fetch.FetchResult;
+
+import java.util.ArrayList;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Движок обхода страниц сайтов.
+ * <p> Для каждого сайта хранится своя очередь адресов страниц ({@link SiteFrontier}) с ограниченной частью в памяти,
+ * все очереди разбирает один общий фиксированный набор потоков загрузки.
+ * <p> Интервал между загрузками страниц одного хоста соблюдает {@link HostScheduler}:
+ * поток берет адрес только у сайта, для хоста которого открыт слот загрузки,
+ * поэтому ожидающие загрузки страницы не занимают потоки.
+ * <p> Загрузка страниц асинхронная: поток только отправляет запрос и сразу берет следующий адрес,
+ * загруженные страницы разбираются и индексируются в отдельном пуле потоков,
+ * количество одновременно загружаемых и обрабатываемых страниц ограничено настройкой max-in-flight
+ */
+public class BypassEngine {
+    // максимальное время ожидания открытия слота загрузки, мс
+    private static final long IDLE_WAIT_MS = 100;
+
+    // ссылка на обьект для доступа к сервису сайтов
+    private final SiteService siteService;
+    // настройки обхода страниц из application.yml
+    private final ApplicationProps.CrawlerProps props;
+    // планировщик интервалов между загрузками страниц для хостов
+    private final HostScheduler hostScheduler = new HostScheduler();
+    // очереди адресов страниц сайтов
+    private final ArrayList<SiteFrontier> frontiers = new ArrayList<>();
+    // позиция сайта, с которого начнется следующий поиск готовой к загрузке страницы
+    private int nextFrontier = 0;
+    // ограничение количества одновременно загружаемых и обрабатываемых страниц
+    private final Semaphore inFlightPages;
+    // потоки, выдающие страницы на загрузку
+    private ExecutorService executor;
+    // потоки разбора и индексации загруженных страниц
+    private ExecutorService processingExecutor;
+
+    /**
+     * @param siteService ссылка на обьект для доступа к сервису сайтов
+     * @param props настройки обхода страниц из application.yml
+     */
+    public BypassEngine(SiteService siteService, ApplicationProps.CrawlerProps props) {
+        this.siteService = siteService;
+        this.props = props;
+        this.inFlightPages = new Semaphore(Math.max(1, props.getMaxInFlight()));
+    }
+
+    /**
+     * Добавление сайта для обхода начиная с главной страницы,
+     * вызывается до запуска движка
+     * @param site обьект с данными сайта
+     * @param crawlDelayMs минимальный интервал между загрузками страниц сайта, мс
+     * @return очередь адресов страниц сайта, через которую можно дождаться окончания обхода
+     */
+    public SiteFrontier addSite(Site site, long crawlDelayMs) {
+        SiteFrontier frontier = new SiteFrontier(site, props.getQueueCapacity());
+        hostScheduler.register(frontier.getHost(), crawlDelayMs);
+        frontier.addIfNew("/");
+        synchronized (this) {
+            frontiers.add(frontier);
+        }
+        return frontier;
+    }
+
+    /**
+     * Запуск потоков загрузки страниц
+     */
+    public void start() {
+        int workersCount = Math.max(1, props.getWorkers());
+        processingExecutor = Executors.newFixedThreadPool(Math.max(1, props.getProcessingThreads()),
+                new NamedThreadFactory("page-processor"));
+        executor = Executors.newFixedThreadPool(workersCount, new NamedThreadFactory("page-dispatcher"));
+        for (int i = 0; i < workersCount; i++) {
+            executor.execute(this::work);
+        }
+        executor.shutdown();
+        new Thread(this::awaitWorkers).start();
+    }
+
+    /**
+     * Цикл потока загрузки: берет адрес страницы у сайта с открытым слотом загрузки,
+     * пока есть необработанные страницы
+     */
+    private void work() {
+        while (!BypassCalculator.getStopIndexing()) {
+            PageTask task;
+            long waitMs;
+            synchronized (this) {
+                if (frontiers.stream().allMatch(SiteFrontier::isFinished)) {
+                    return;
+                }
+                waitMs = IDLE_WAIT_MS;
+                task = null;
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < frontiers.size() && task == null; i++) {
+                    SiteFrontier frontier = frontiers.get((nextFrontier + i) % frontiers.size());
+                    if (frontier.isFinished() || !frontier.hasReadyPages()) {
+                        continue;
+                    }
+                    long slotWait = hostScheduler.tryAcquire(frontier.getHost(), now);
+                    String path = slotWait == 0 ? frontier.poll() : null;
+                    if (path != null) {
+                        task = new PageTask(frontier, path);
+                        nextFrontier = (nextFrontier + i + 1) % frontiers.size();
+                    } else if (slotWait > 0) {
+                        waitMs = Math.min(waitMs, slotWait);
+                    }
+                }
+            }
+            try {
+                if (task == null) {
+                    Thread.sleep(waitMs);
+                    continue;
+                }
+                dispatchPage(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Отправка страницы на загрузку, после загрузки страница индексируется в пуле потоков обработки,
+     * найденные на ней новые страницы добавляются в очередь
+     * @param task адрес страницы и очередь сайта
+     */
+    private void dispatchPage(PageTask task) throws InterruptedException {
+        inFlightPages.acquire();
+        SiteFrontier frontier = task.frontier;
+        BypassData data = new BypassData();
+        data.setPath(task.path);
+        BypassCalculator calculator = new BypassCalculator(frontier.getSite(), siteService, data);
+        CompletableFuture<FetchResult> loading;
+        try {
+            loading = calculator.loadPage();
+        } catch (RuntimeException ex) {
+            loading = CompletableFuture.failedFuture(ex);
+        }
+        loading.thenAcceptAsync(result -> {
+                    calculator.processPage(result);
+                    if (calculator.isRefetchRequired()) {
+                        // повторная загрузка идет через очередь сайта, чтобы соблюдался интервал загрузок хоста
+                        frontier.retry(task.path);
+                    }
+                    addChildPages(frontier, calculator);
+                }, processingExecutor)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        calculator.processError(error);
+                    }
+                    frontier.pageDone();
+                    inFlightPages.release();
+                });
+    }
+
+    /**
+     * Добавление в очередь сайта новых страниц, найденных на обработанной странице
+     * @param frontier очередь адресов страниц сайта
+     * @param calculator утилита обработки страницы
+     */
+    private void addChildPages(SiteFrontier frontier, BypassCalculator calculator) {
+        Site site = frontier.getSite();
+        for (String childPath : calculator.getChildPaths()) {
+            if (!childPath.equals(site.getUrl())) {
+                frontier.addIfNew(childPath);
+            }
+        }
+    }
+
+    /**
+     * Ожидание завершения потоков загрузки,
+     * после остановки индексации отмечает обход незавершенных сайтов как законченный
+     */
+    private void awaitWorkers() {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                synchronized (this) {
+                    for (SiteFrontier frontier : frontiers) {
+                        if (!frontier.isFinished()) {
+                            System.out.println("Обход сайта " + frontier.getSite().getUrl() +
+                                    " продолжается, страниц в очереди: " + frontier.getPendingPages() +
+                                    ", найдено страниц: " + frontier.getVisitedPages());
+                        }
+                    }
+                }
+            }
+            // ждем окончания обработки уже загружаемых страниц
+            inFlightPages.acquire(Math.max(1, props.getMaxInFlight()));
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        processingExecutor.shutdown();
+        synchronized (this) {
+            frontiers.forEach(SiteFrontier::finish);
+        }
+    }
+
+    /**
+     * Фабрика потоков с заданным префиксом имени
+     */
+    private static class NamedThreadFactory implements ThreadFactory {
+        // префикс имени потока
+        private final String prefix;
+        // номер следующего потока
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+        }
+    }
+
+    /**
+     * Адрес страницы, выданный потоку загрузки
+     */
+    private static class PageTask {
+        // очередь адресов страниц сайта
+        private final SiteFrontier frontier;
+        // путь к странице на сайте
+        private final String path;
+
+        private PageTask(SiteFrontier frontier, String path) {
+            this.frontier = frontier;
+            this.path = path;
+        }
+    }
+}
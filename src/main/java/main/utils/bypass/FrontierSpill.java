@@ -0,0 +1,97 @@
+package main.utils.bypass;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Резервная очередь адресов страниц во временном файле.
+ * <p> Адреса, не поместившиеся в основную очередь сайта, дописываются в конец файла по одному в строке
+ * и читаются из него в том же порядке, поэтому память, занятая очередью сайта, не растет с количеством
+ * найденных страниц. Файл создается при первой записи и удаляется, когда очередь опустеет
+ */
+class FrontierSpill {
+    // временный файл с адресами, null - файл не создан
+    private Path file;
+    // запись адресов в конец файла
+    private BufferedWriter writer;
+    // чтение адресов с начала файла
+    private BufferedReader reader;
+    // количество адресов в файле, которые еще не прочитаны
+    private int size;
+    // есть ли записанные адреса, не сброшенные в файл
+    private boolean unflushed;
+
+    /**
+     * Добавление адреса в конец очереди
+     * @param path путь к странице на сайте
+     */
+    synchronized void add(String path) throws IOException {
+        if (file == null) {
+            file = Files.createTempFile("frontier-", ".txt");
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+        }
+        writer.write(path);
+        writer.newLine();
+        size++;
+        unflushed = true;
+    }
+
+    /**
+     * Извлечение адреса из начала очереди
+     * @return путь к странице на сайте, null если очередь пуста
+     */
+    synchronized String poll() throws IOException {
+        if (size == 0) {
+            return null;
+        }
+        if (unflushed) {
+            writer.flush();
+            unflushed = false;
+        }
+        String path = reader.readLine();
+        if (path == null) {
+            throw new IOException("неожиданный конец файла очереди адресов " + file);
+        }
+        size--;
+        if (size == 0) {
+            close();
+        }
+        return path;
+    }
+
+    /**
+     * @return true если в очереди нет адресов
+     */
+    synchronized boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Удаление временного файла, непрочитанные адреса отбрасываются
+     * @return количество отброшенных адресов
+     */
+    synchronized int close() {
+        int dropped = size;
+        if (file == null) {
+            return dropped;
+        }
+        try {
+            writer.close();
+            reader.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Ошибка удаления файла очереди адресов " + file + ": " + e);
+        }
+        file = null;
+        writer = null;
+        reader = null;
+        size = 0;
+        unflushed = false;
+        return dropped;
+    }
+}
@@ -0,0 +1,39 @@
+package main.utils.bypass;
+
+import java.util.HashMap;
+
+/**
+ * Планировщик "вежливого" обхода: для каждого хоста хранит время,
+ * с которого разрешена следующая загрузка страницы, и выдает разрешения не чаще заданного интервала
+ */
+public class HostScheduler {
+    // минимальные интервалы между загрузками страниц для хостов, мс
+    private final HashMap<String, Long> delays = new HashMap<>();
+    // время, с которого разрешена следующая загрузка для хостов, мс
+    private final HashMap<String, Long> nextSlots = new HashMap<>();
+
+    /**
+     * Регистрация хоста, если хост уже зарегистрирован - используется больший из интервалов
+     * @param host имя хоста
+     * @param delayMs минимальный интервал между загрузками страниц, мс
+     */
+    public synchronized void register(String host, long delayMs) {
+        delays.merge(host, Math.max(0, delayMs), Math::max);
+    }
+
+    /**
+     * Попытка получить разрешение на загрузку страницы с хоста,
+     * при успехе следующее разрешение будет выдано не раньше, чем через интервал хоста
+     * @param host имя хоста
+     * @param now текущее время, мс
+     * @return 0 если загрузка разрешена, иначе время до открытия следующего слота, мс
+     */
+    public synchronized long tryAcquire(String host, long now) {
+        long nextSlot = nextSlots.getOrDefault(host, 0L);
+        if (nextSlot > now) {
+            return nextSlot - now;
+        }
+        nextSlots.put(host, now + delays.getOrDefault(host, 0L));
+        return 0;
+    }
+}
@@ -0,0 +1,43 @@
+package main.utils.bypass;
+
+/**
+ * Леммы, найденные на странице, и их ранги на этой странице
+ */
+public class PageLemmas {
+    // леммы
+    private final String[] lemmas;
+    // ранги лемм
+    private final float[] ranks;
+
+    /**
+     * @param lemmas леммы
+     * @param ranks ранги лемм, в том же порядке
+     */
+    public PageLemmas(String[] lemmas, float[] ranks) {
+        this.lemmas = lemmas;
+        this.ranks = ranks;
+    }
+
+    /**
+     * @return количество лемм
+     */
+    public int size() {
+        return lemmas.length;
+    }
+
+    /**
+     * @param index номер леммы
+     * @return лемма
+     */
+    public String getLemma(int index) {
+        return lemmas[index];
+    }
+
+    /**
+     * @param index номер леммы
+     * @return ранг леммы на странице
+     */
+    public float getRank(int index) {
+        return ranks[index];
+    }
+}
@@ -0,0 +1,96 @@
+package main.utils.bypass;
+
+import com.github.cliftonlabs.json_simple.JsonObject;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Статистика памяти, используемой при обработке загруженных страниц.
+ * <p> Для каждой страницы учитывается размер загруженного контента и обьем памяти, выделенной потоком
+ * обработки от разбора HTML до освобождения DOM (com.sun.management.ThreadMXBean#getThreadAllocatedBytes).
+ * Выделенная память - верхняя оценка пикового размера кучи, занимаемого одной обрабатываемой страницей
+ */
+public class PageMemoryStats {
+    // обьект для получения обьема памяти, выделенной потоком, null если JVM это не поддерживает
+    private static final com.sun.management.ThreadMXBean threadBean = getThreadBean();
+
+    // количество обработанных страниц
+    private final LongAdder pages = new LongAdder();
+    // суммарный размер загруженного контента, байт
+    private final LongAdder bodyBytes = new LongAdder();
+    // максимальный размер загруженного контента, байт
+    private final LongAccumulator maxBodyBytes = new LongAccumulator(Math::max, 0);
+    // суммарный обьем памяти, выделенной при обработке страниц, байт
+    private final LongAdder allocatedBytes = new LongAdder();
+    // максимальный обьем памяти, выделенной при обработке одной страницы, байт
+    private final LongAccumulator maxAllocatedBytes = new LongAccumulator(Math::max, 0);
+    // количество страниц, пропущенных из-за превышения максимального размера
+    private final LongAdder skippedPages = new LongAdder();
+
+    /**
+     * @return обьем памяти, выделенной текущим потоком с момента его запуска, байт, -1 если измерение недоступно
+     */
+    public static long getThreadAllocatedBytes() {
+        return threadBean == null ? -1 : threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Учет обработанной страницы, вызывается из потока, в котором обрабатывалась страница
+     * @param bodySize размер загруженного контента, байт
+     * @param startAllocatedBytes значение {@link #getThreadAllocatedBytes()} перед началом обработки
+     */
+    public void addPage(long bodySize, long startAllocatedBytes) {
+        pages.increment();
+        bodyBytes.add(bodySize);
+        maxBodyBytes.accumulate(bodySize);
+        if (startAllocatedBytes >= 0) {
+            long allocated = getThreadAllocatedBytes() - startAllocatedBytes;
+            allocatedBytes.add(allocated);
+            maxAllocatedBytes.accumulate(allocated);
+        }
+    }
+
+    /**
+     * Учет страницы, пропущенной из-за превышения максимального размера
+     */
+    public void addSkipped() {
+        skippedPages.increment();
+    }
+
+    /**
+     * @return статистика для отображения в /statistics
+     */
+    public JsonObject toJson() {
+        JsonObject result = new JsonObject();
+        long count = pages.sum();
+        result.put("pages", count);
+        result.put("skippedTooLarge", skippedPages.sum());
+        result.put("avgBodyBytes", count == 0 ? 0 : bodyBytes.sum() / count);
+        result.put("maxBodyBytes", maxBodyBytes.get());
+        result.put("allocationMeasured", threadBean != null);
+        result.put("avgAllocatedBytes", count == 0 ? 0 : allocatedBytes.sum() / count);
+        result.put("maxAllocatedBytes", maxAllocatedBytes.get());
+        return result;
+    }
+
+    /**
+     * @return обьект для получения обьема памяти, выделенной потоком, null если JVM это не поддерживает
+     */
+    private static com.sun.management.ThreadMXBean getThreadBean() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean result = (com.sun.management.ThreadMXBean) bean;
+        if (!result.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        if (!result.isThreadAllocatedMemoryEnabled()) {
+            result.setThreadAllocatedMemoryEnabled(true);
+        }
+        return result;
+    }
+}
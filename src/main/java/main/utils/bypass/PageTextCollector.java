@@ -0,0 +1,134 @@
+package main.utils.bypass;
+
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeVisitor;
+
+import java.util.HashSet;
+
+/**
+ * Сбор ссылок, заголовка и текста body страницы во время обхода DOM при поиске лемм,
+ * поэтому документ обходится один раз, а не отдельно для ссылок, заголовка, текста и каждого поля.
+ * <p> Текст собирается так же, как в {@link Element#text()}: пробелы схлопываются,
+ * на границах блочных элементов добавляется пробел
+ */
+public class PageTextCollector implements NodeVisitor {
+    // значения атрибута href тегов a и link
+    private final HashSet<String> links = new HashSet<>();
+    // текст заголовка страницы
+    private final StringBuilder title = new StringBuilder();
+    // текст элемента body
+    private final StringBuilder body = new StringBuilder();
+    // глубина открытого элемента title, -1 если обход не внутри title
+    private int titleDepth = -1;
+    // глубина открытого элемента body, -1 если обход не внутри body
+    private int bodyDepth = -1;
+    // найден ли элемент title
+    private boolean hasTitle = false;
+    // найден ли элемент body
+    private boolean hasBody = false;
+
+    @Override
+    public void head(Node node, int depth) {
+        if (node instanceof TextNode) {
+            if (titleDepth >= 0) {
+                appendText(title, (TextNode) node);
+            }
+            if (bodyDepth >= 0) {
+                appendText(body, (TextNode) node);
+            }
+            return;
+        }
+        if (!(node instanceof Element)) {
+            return;
+        }
+        Element element = (Element) node;
+        switch (element.normalName()) {
+            case "a":
+            case "link":
+                links.add(element.attr("href"));
+                break;
+            case "title":
+                if (!hasTitle) {
+                    hasTitle = true;
+                    titleDepth = depth;
+                }
+                break;
+            case "body":
+                if (!hasBody) {
+                    hasBody = true;
+                    bodyDepth = depth;
+                }
+                break;
+        }
+        if (bodyDepth >= 0 && body.length() > 0 && (element.isBlock() || element.normalName().equals("br")) &&
+                !StringUtil.isActuallyWhitespace(body.charAt(body.length() - 1))) {
+            body.append(' ');
+        }
+    }
+
+    @Override
+    public void tail(Node node, int depth) {
+        if (!(node instanceof Element)) {
+            return;
+        }
+        if (depth == titleDepth) {
+            titleDepth = -1;
+        }
+        if (depth == bodyDepth) {
+            bodyDepth = -1;
+        }
+        if (bodyDepth >= 0 && ((Element) node).isBlock() && node.nextSibling() instanceof TextNode &&
+                body.length() > 0 && !StringUtil.isActuallyWhitespace(body.charAt(body.length() - 1))) {
+            body.append(' ');
+        }
+    }
+
+    /**
+     * @return значения атрибута href тегов a и link
+     */
+    public HashSet<String> getLinks() {
+        return links;
+    }
+
+    /**
+     * @return текст первого элемента title, null если его нет на странице
+     */
+    public String getTitle() {
+        return hasTitle ? title.toString().trim() : null;
+    }
+
+    /**
+     * @return текст элемента body, null если его нет на странице
+     */
+    public String getText() {
+        return hasBody ? body.toString().trim() : null;
+    }
+
+    /**
+     * Добавление текста узла, пробелы схлопываются, кроме текста внутри элементов pre, title, textarea
+     */
+    private static void appendText(StringBuilder accum, TextNode node) {
+        if (preserveWhitespace(node.parent())) {
+            accum.append(node.getWholeText());
+            return;
+        }
+        boolean lastIsWhitespace = accum.length() == 0 || StringUtil.isActuallyWhitespace(accum.charAt(accum.length() - 1));
+        StringUtil.appendNormalisedWhitespace(accum, node.getWholeText(), lastIsWhitespace);
+    }
+
+    /**
+     * Проверка, сохраняются ли пробелы в тексте элемента, так же как в jsoup - до шести уровней вверх
+     */
+    private static boolean preserveWhitespace(Node node) {
+        for (int i = 0; i < 6 && node instanceof Element; i++) {
+            if (((Element) node).tag().preserveWhitespace()) {
+                return true;
+            }
+            node = node.parent();
+        }
+        return false;
+    }
+}
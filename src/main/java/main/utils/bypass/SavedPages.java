@@ -0,0 +1,118 @@
+package main.utils.bypass;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Страницы сайта, сохраненные до начала обхода и ещё не найденные при обходе.
+ * <p> Вместо путей и признаков версии хранит 64-битные хеши путей ({@link VisitedSet#hash(String)})
+ * и идентификаторы страниц в таблице с открытой адресацией, поэтому страница занимает 16-32 байта
+ * независимо от длины пути. Признаки версии найденной страницы загружаются из базы по её идентификатору
+ */
+public class SavedPages {
+    // начальный размер таблицы, степень двойки
+    private static final int INITIAL_CAPACITY = 64;
+    // значение пустой ячейки таблицы хешей
+    private static final long EMPTY = 0L;
+
+    // таблица хешей путей
+    private long[] hashes = new long[INITIAL_CAPACITY];
+    // идентификаторы страниц в ячейках таблицы хешей, 0 - страница найдена при обходе
+    private int[] ids = new int[INITIAL_CAPACITY];
+    // количество страниц в таблице
+    private int size = 0;
+    // количество страниц, ещё не найденных при обходе
+    private int unvisitedCount = 0;
+
+    /**
+     * Добавление сохраненной страницы, вызывается до начала обхода
+     * @param pageId идентификатор страницы
+     * @param path путь к странице
+     */
+    public synchronized void add(int pageId, String path) {
+        long hash = VisitedSet.hash(path);
+        int index = indexOf(hashes, hash);
+        // при совпадении хешей двух путей сохраняется первая страница
+        if (hashes[index] == hash) {
+            return;
+        }
+        hashes[index] = hash;
+        ids[index] = pageId;
+        size++;
+        unvisitedCount++;
+        if (size * 4L > hashes.length * 3L) {
+            resize();
+        }
+    }
+
+    /**
+     * Отметка о том, что страница найдена при обходе
+     * @param path путь к странице
+     * @return идентификатор сохраненной страницы, 0 если страница не сохранена или уже найдена
+     */
+    public synchronized int visit(String path) {
+        int index = indexOf(hashes, VisitedSet.hash(path));
+        int pageId = ids[index];
+        if (pageId != 0) {
+            ids[index] = 0;
+            unvisitedCount--;
+        }
+        return pageId;
+    }
+
+    /**
+     * @return количество сохраненных страниц
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return количество страниц, ещё не найденных при обходе
+     */
+    public synchronized int getUnvisitedCount() {
+        return unvisitedCount;
+    }
+
+    /**
+     * @return идентификаторы страниц, ещё не найденных при обходе
+     */
+    public synchronized Set<Integer> getUnvisitedPageIds() {
+        HashSet<Integer> result = new HashSet<>();
+        for (int pageId : ids) {
+            if (pageId != 0) {
+                result.add(pageId);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Увеличение таблицы в 2 раза при заполнении более чем на 3/4
+     */
+    private void resize() {
+        long[] newHashes = new long[hashes.length * 2];
+        int[] newIds = new int[hashes.length * 2];
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != EMPTY) {
+                int index = indexOf(newHashes, hashes[i]);
+                newHashes[index] = hashes[i];
+                newIds[index] = ids[i];
+            }
+        }
+        hashes = newHashes;
+        ids = newIds;
+    }
+
+    /**
+     * @return позиция хеша в таблице или позиция пустой ячейки, в которую его нужно записать
+     */
+    private static int indexOf(long[] table, long hash) {
+        int mask = table.length - 1;
+        int index = (int) hash & mask;
+        while (table[index] != EMPTY && table[index] != hash) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+}
@@ -0,0 +1,207 @@
+package main.utils.bypass;
+
+import main.model.Site;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Очередь адресов страниц одного сайта (frontier), ожидающих загрузки.
+ * <p> Основная очередь в памяти ограничена по размеру, адреса, которые в неё не поместились,
+ * без ожидания записываются в резервную очередь во временном файле ({@link FrontierSpill})
+ * и выдаются после адресов основной очереди
+ */
+public class SiteFrontier {
+    // обьект с данными сайта
+    private final Site site;
+    // имя хоста сайта, используется для соблюдения интервала между загрузками
+    private final String host;
+    // очередь адресов страниц, ожидающих загрузки
+    private final BlockingQueue<String> queue;
+    // адреса страниц, уже найденных на сайте
+    private final VisitedSet visitedPages = new VisitedSet();
+    // адреса, не поместившиеся в основную очередь
+    private final FrontierSpill spill = new FrontierSpill();
+    // количество найденных, но ещё не обработанных страниц
+    private final AtomicInteger pendingPages = new AtomicInteger();
+    // счетчик для ожидания окончания обхода сайта
+    private final CountDownLatch finished = new CountDownLatch(1);
+    // ошибка очереди, из-за которой часть найденных страниц не была загружена, null - ошибок нет
+    private volatile String error;
+
+    /**
+     * @param site обьект с данными сайта
+     * @param capacity максимальный размер очереди
+     */
+    public SiteFrontier(Site site, int capacity) {
+        this.site = site;
+        this.host = URI.create(site.getUrl()).getHost();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+    }
+
+    /**
+     * @return обьект с данными сайта
+     */
+    public Site getSite() {
+        return site;
+    }
+
+    /**
+     * @return имя хоста сайта
+     */
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * Добавление адреса страницы в очередь, если страница не была найдена ранее,
+     * если основная очередь заполнена или в резервной очереди уже есть адреса - адрес записывается
+     * в резервную очередь, чтобы сохранить порядок обхода
+     * @param path путь к странице на сайте
+     * @return true если адрес добавлен в очередь
+     */
+    public boolean addIfNew(String path) {
+        if (!visitedPages.add(path)) {
+            return false;
+        }
+        return enqueue(path);
+    }
+
+    /**
+     * Повторное добавление в очередь адреса уже найденной страницы,
+     * страница будет загружена ещё раз после адресов, уже стоящих в очереди
+     * @param path путь к странице на сайте
+     * @return true если адрес добавлен в очередь
+     */
+    public boolean retry(String path) {
+        return enqueue(path);
+    }
+
+    /**
+     * Добавление адреса в основную очередь или, если она заполнена или в резервной очереди уже есть адреса,
+     * в резервную очередь
+     * @param path путь к странице на сайте
+     * @return true если адрес добавлен в очередь
+     */
+    private boolean enqueue(String path) {
+        pendingPages.incrementAndGet();
+        synchronized (spill) {
+            if (spill.isEmpty() && queue.offer(path)) {
+                return true;
+            }
+            try {
+                spill.add(path);
+            } catch (IOException e) {
+                setError("Ошибка записи адреса " + path + " в очередь сайта " + site.getUrl() + ": " + e);
+                pageDone();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true если в очереди есть адреса, готовые к загрузке
+     */
+    public boolean hasReadyPages() {
+        return !queue.isEmpty() || !spill.isEmpty();
+    }
+
+    /**
+     * Извлечение адреса страницы из очереди, после опустения основной очереди адреса читаются из резервной
+     * @return путь к странице на сайте, null если очередь пуста
+     */
+    public String poll() {
+        String path = queue.poll();
+        if (path != null) {
+            return path;
+        }
+        synchronized (spill) {
+            try {
+                return spill.poll();
+            } catch (IOException e) {
+                // непрочитанные адреса больше не будут загружены, обход сайта завершится с ошибкой
+                int dropped = spill.close();
+                setError("Ошибка чтения очереди сайта " + site.getUrl() + ", не загружено страниц: " + dropped +
+                        ": " + e);
+                pagesDone(dropped);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Отметка об окончании обработки страницы, если страниц больше нет - обход сайта завершен
+     */
+    public void pageDone() {
+        pagesDone(1);
+    }
+
+    /**
+     * @return ошибка очереди, из-за которой часть найденных страниц не была загружена, null - ошибок нет
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return true если все найденные страницы сайта обработаны
+     */
+    public boolean isFinished() {
+        return finished.getCount() == 0;
+    }
+
+    /**
+     * @return количество найденных, но ещё не обработанных страниц
+     */
+    public int getPendingPages() {
+        return pendingPages.get();
+    }
+
+    /**
+     * @return количество найденных на сайте страниц
+     */
+    public int getVisitedPages() {
+        return visitedPages.size();
+    }
+
+    /**
+     * Принудительное завершение обхода, вызывается при остановке индексации
+     */
+    public void finish() {
+        finished.countDown();
+        spill.close();
+    }
+
+    /**
+     * Отметка об окончании обработки нескольких страниц
+     * @param count количество страниц
+     */
+    private void pagesDone(int count) {
+        if (count > 0 && pendingPages.addAndGet(-count) == 0) {
+            finished.countDown();
+        }
+    }
+
+    /**
+     * Сохранение ошибки очереди, сохраняется первая ошибка
+     * @param message текст ошибки
+     */
+    private void setError(String message) {
+        System.err.println(message);
+        if (error == null) {
+            error = message;
+        }
+    }
+
+    /**
+     * Ожидание окончания обхода сайта
+     */
+    public void await() throws InterruptedException {
+        finished.await();
+    }
+}
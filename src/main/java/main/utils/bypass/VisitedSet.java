@@ -0,0 +1,135 @@
+package main.utils.bypass;
+
+/**
+ * Потокобезопасное множество посещенных адресов страниц.
+ * <p> Вместо строк хранит 64-битные хеши путей в таблицах с открытой адресацией,
+ * поэтому один адрес занимает в среднем 11-16 байт независимо от длины пути.
+ * <p> Множество разбито на сегменты со своими блокировками,
+ * чтобы потоки обхода сайта не ждали друг друга при добавлении адресов
+ */
+public class VisitedSet {
+    // количество сегментов, степень двойки
+    private static final int SEGMENTS_COUNT = 16;
+    // начальный размер таблицы сегмента, степень двойки
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+    // значение пустой ячейки таблицы
+    private static final long EMPTY = 0L;
+
+    // сегменты множества
+    private final Segment[] segments = new Segment[SEGMENTS_COUNT];
+
+    public VisitedSet() {
+        for (int i = 0; i < SEGMENTS_COUNT; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Атомарное добавление адреса, если его ещё нет в множестве
+     * @param path путь к странице
+     * @return true если адрес добавлен, false если он уже был в множестве
+     */
+    public boolean add(String path) {
+        long hash = hash(path);
+        return segmentFor(hash).add(hash);
+    }
+
+    /**
+     * @param path путь к странице
+     * @return true если адрес есть в множестве
+     */
+    public boolean contains(String path) {
+        long hash = hash(path);
+        return segmentFor(hash).contains(hash);
+    }
+
+    /**
+     * @return количество адресов в множестве
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * 64-битный хеш строки: FNV-1a с последующим перемешиванием битов (финализатор MurmurHash3)
+     * @param path путь к странице
+     * @return хеш, не равный значению пустой ячейки
+     */
+    public static long hash(String path) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    private Segment segmentFor(long hash) {
+        return segments[(int) (hash >>> 60) & (SEGMENTS_COUNT - 1)];
+    }
+
+    /**
+     * Сегмент множества - таблица хешей с линейным пробированием
+     */
+    private static class Segment {
+        // таблица хешей
+        private long[] table = new long[INITIAL_SEGMENT_CAPACITY];
+        // количество хешей в таблице
+        private int size = 0;
+
+        private synchronized boolean add(long hash) {
+            int index = indexOf(table, hash);
+            if (table[index] == hash) {
+                return false;
+            }
+            table[index] = hash;
+            size++;
+            if (size * 4L > table.length * 3L) {
+                resize();
+            }
+            return true;
+        }
+
+        private synchronized boolean contains(long hash) {
+            return table[indexOf(table, hash)] == hash;
+        }
+
+        private synchronized int size() {
+            return size;
+        }
+
+        /**
+         * Увеличение таблицы в 2 раза при заполнении более чем на 3/4
+         */
+        private void resize() {
+            long[] newTable = new long[table.length * 2];
+            for (long hash : table) {
+                if (hash != EMPTY) {
+                    newTable[indexOf(newTable, hash)] = hash;
+                }
+            }
+            table = newTable;
+        }
+
+        /**
+         * @return позиция хеша в таблице или позиция пустой ячейки, в которую его нужно записать
+         */
+        private static int indexOf(long[] table, long hash) {
+            int mask = table.length - 1;
+            int index = (int) hash & mask;
+            while (table[index] != EMPTY && table[index] != hash) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package main.utils.bypass.fetch;
+
+import lombok.Data;
+
+/**
+ * Результат загрузки страницы
+ */
+@Data
+public class FetchResult {
+    // HTTP status code полученный при загрузке страницы
+    private int statusCode;
+    // значение заголовка Content-Type
+    private String contentType;
+    // кодировка контента из заголовка Content-Type, null если не указана
+    private String charset;
+    // загруженный контент страницы
+    private byte[] body;
+    // значение заголовка ETag, null если сервер его не передал
+    private String etag;
+    // значение заголовка Last-Modified, null если сервер его не передал
+    private String lastModified;
+    // контент страницы больше максимального размера и не загружен
+    private boolean tooLarge;
+
+    /**
+     * @return true если контент страницы является html документом
+     */
+    public boolean isHtml() {
+        return contentType == null || contentType.contains("html");
+    }
+
+    /**
+     * @return true если страница не изменилась с версии, указанной в условном запросе (304 Not Modified)
+     */
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+}
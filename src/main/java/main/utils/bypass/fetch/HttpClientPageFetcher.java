@@ -0,0 +1,104 @@
+package main.utils.bypass.fetch;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Неблокирующая загрузка страниц через java.net.http.HttpClient,
+ * ожидание ответов не занимает потоки, поэтому одновременно могут загружаться тысячи страниц
+ */
+public class HttpClientPageFetcher implements PageFetcher {
+    // количество потоков для обработки ответов HttpClient
+    private static final int CLIENT_THREADS = 2;
+
+    // значение user agent, используемое для загрузки контента страницы
+    private final String userAgent;
+    // максимальное время ожидания ответа
+    private final Duration timeout;
+    // максимальный размер загружаемой страницы, байт
+    private final int maxPageSize;
+    // клиент для выполнения запросов
+    private final HttpClient client;
+
+    /**
+     * @param userAgent значение user agent, используемое для загрузки контента страницы
+     * @param timeoutMs максимальное время ожидания ответа, мс
+     * @param maxPageSize максимальный размер загружаемой страницы, байт
+     */
+    public HttpClientPageFetcher(String userAgent, int timeoutMs, int maxPageSize) {
+        this.userAgent = userAgent;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.maxPageSize = maxPageSize;
+        ExecutorService executor = Executors.newFixedThreadPool(CLIENT_THREADS, r -> {
+            Thread thread = new Thread(r, "page-fetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(timeout)
+                .executor(executor)
+                .build();
+    }
+
+    public CompletableFuture<FetchResult> fetch(String url, PageValidators validators) {
+        HttpRequest request;
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(timeout)
+                    .header("User-Agent", userAgent)
+                    .header("Referer", "http://www.google.com")
+                    .GET();
+            if (validators != null && validators.getEtag() != null) {
+                builder.header("If-None-Match", validators.getEtag());
+            }
+            if (validators != null && validators.getLastModified() != null) {
+                builder.header("If-Modified-Since", validators.getLastModified());
+            }
+            request = builder.build();
+        } catch (IllegalArgumentException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        HttpResponse.BodyHandler<byte[]> bodyHandler = responseInfo -> new LimitedBodySubscriber(maxPageSize);
+        return client.sendAsync(request, bodyHandler).thenApply(response -> {
+            FetchResult result = new FetchResult();
+            result.setStatusCode(response.statusCode());
+            String contentType = response.headers().firstValue("Content-Type").orElse(null);
+            result.setContentType(contentType);
+            result.setCharset(getCharset(contentType));
+            result.setBody(response.body());
+            result.setTooLarge(response.body() == null);
+            result.setEtag(response.headers().firstValue("ETag").orElse(null));
+            result.setLastModified(response.headers().firstValue("Last-Modified").orElse(null));
+            return result;
+        });
+    }
+
+    /**
+     * @param contentType значение заголовка Content-Type
+     * @return кодировка контента, null если не указана
+     */
+    private static String getCharset(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int charsetPos = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (charsetPos == -1) {
+            return null;
+        }
+        String charset = contentType.substring(charsetPos + "charset=".length());
+        int endPos = charset.indexOf(';');
+        if (endPos != -1) {
+            charset = charset.substring(0, endPos);
+        }
+        charset = charset.replace("\"", "").trim();
+        return charset.isEmpty() ? null : charset;
+    }
+}
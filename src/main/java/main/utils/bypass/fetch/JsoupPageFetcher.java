@@ -0,0 +1,76 @@
+package main.utils.bypass.fetch;
+
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Блокирующая загрузка страниц через Jsoup,
+ * каждая загружаемая страница занимает поток из пула ограниченного размера
+ */
+public class JsoupPageFetcher implements PageFetcher {
+    // значение user agent, используемое для загрузки контента страницы
+    private final String userAgent;
+    // максимальное время ожидания ответа, мс
+    private final int timeoutMs;
+    // максимальный размер загружаемой страницы, байт
+    private final int maxPageSize;
+    // потоки загрузки страниц
+    private final ExecutorService executor;
+
+    /**
+     * @param userAgent значение user agent, используемое для загрузки контента страницы
+     * @param timeoutMs максимальное время ожидания ответа, мс
+     * @param threads количество потоков загрузки страниц
+     * @param maxPageSize максимальный размер загружаемой страницы, байт
+     */
+    public JsoupPageFetcher(String userAgent, int timeoutMs, int threads, int maxPageSize) {
+        this.userAgent = userAgent;
+        this.timeoutMs = timeoutMs;
+        this.maxPageSize = maxPageSize;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread thread = new Thread(r, "page-fetcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<FetchResult> fetch(String url, PageValidators validators) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Connection connection = Jsoup.connect(url)
+                        .userAgent(userAgent)
+                        .referrer("http://www.google.com")
+                        .timeout(timeoutMs)
+                        .ignoreHttpErrors(true)
+                        .ignoreContentType(true)
+                        // на байт больше максимального размера, чтобы отличить слишком большую страницу
+                        .maxBodySize((int) Math.min(Integer.MAX_VALUE, maxPageSize + 1L));
+                if (validators != null && validators.getEtag() != null) {
+                    connection.header("If-None-Match", validators.getEtag());
+                }
+                if (validators != null && validators.getLastModified() != null) {
+                    connection.header("If-Modified-Since", validators.getLastModified());
+                }
+                Connection.Response response = connection.execute();
+                FetchResult result = new FetchResult();
+                result.setStatusCode(response.statusCode());
+                result.setContentType(response.contentType());
+                result.setCharset(response.charset());
+                byte[] body = response.bodyAsBytes();
+                result.setTooLarge(body.length > maxPageSize);
+                result.setBody(result.isTooLarge() ? null : body);
+                result.setEtag(response.header("ETag"));
+                result.setLastModified(response.header("Last-Modified"));
+                return result;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }, executor);
+    }
+}
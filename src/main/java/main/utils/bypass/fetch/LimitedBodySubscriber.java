@@ -0,0 +1,84 @@
+package main.utils.bypass.fetch;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Получение контента ответа HttpClient в массив байт с ограничением размера:
+ * если контент больше максимального размера, загрузка прерывается и результатом будет null,
+ * поэтому слишком большие страницы не занимают память целиком
+ */
+class LimitedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+    // максимальный размер контента, байт
+    private final long maxSize;
+    // результат загрузки контента
+    private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+    // полученные части контента
+    private final ArrayList<ByteBuffer> buffers = new ArrayList<>();
+    // размер полученного контента, байт
+    private long size = 0;
+    // подписка на части контента
+    private Flow.Subscription subscription;
+
+    /**
+     * @param maxSize максимальный размер контента, байт
+     */
+    LimitedBodySubscriber(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    @Override
+    public CompletionStage<byte[]> getBody() {
+        return body;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        if (body.isDone()) {
+            return;
+        }
+        for (ByteBuffer item : items) {
+            size += item.remaining();
+        }
+        if (size > maxSize) {
+            buffers.clear();
+            subscription.cancel();
+            body.complete(null);
+            return;
+        }
+        buffers.addAll(items);
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        buffers.clear();
+        body.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (body.isDone()) {
+            return;
+        }
+        byte[] result = new byte[(int) size];
+        int offset = 0;
+        for (ByteBuffer buffer : buffers) {
+            int length = buffer.remaining();
+            buffer.get(result, offset, length);
+            offset += length;
+        }
+        buffers.clear();
+        body.complete(result);
+    }
+}
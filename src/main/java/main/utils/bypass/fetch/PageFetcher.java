@@ -0,0 +1,41 @@
+package main.utils.bypass.fetch;
+
+import main.model.ApplicationProps;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Интерфейс загрузки контента страниц
+ */
+public interface PageFetcher {
+    /**
+     * Асинхронная загрузка страницы
+     * @param url адрес страницы
+     * @return результат загрузки, завершается с ошибкой IOException если страницу не удалось загрузить
+     */
+    default CompletableFuture<FetchResult> fetch(String url) {
+        return fetch(url, null);
+    }
+
+    /**
+     * Асинхронная загрузка страницы условным запросом: если страница не изменилась,
+     * сервер может вернуть код 304 без контента
+     * @param url адрес страницы
+     * @param validators признаки версии страницы с прошлого обхода, null - обычный запрос
+     * @return результат загрузки, завершается с ошибкой IOException если страницу не удалось загрузить
+     */
+    CompletableFuture<FetchResult> fetch(String url, PageValidators validators);
+
+    /**
+     * Создание обьекта загрузки страниц по настройкам из application.yml
+     * @param props настройки обхода страниц
+     * @param userAgent значение user agent, используемое для загрузки контента страницы
+     * @return обьект загрузки страниц
+     */
+    static PageFetcher create(ApplicationProps.CrawlerProps props, String userAgent) {
+        if ("jsoup".equalsIgnoreCase(props.getFetcher())) {
+            return new JsoupPageFetcher(userAgent, props.getTimeout(), props.getMaxInFlight(), props.getMaxPageSize());
+        }
+        return new HttpClientPageFetcher(userAgent, props.getTimeout(), props.getMaxPageSize());
+    }
+}
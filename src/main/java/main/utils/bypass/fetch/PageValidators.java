@@ -0,0 +1,17 @@
+package main.utils.bypass.fetch;
+
+import lombok.Data;
+
+/**
+ * Признаки версии страницы, сохраненные при прошлом обходе сайта:
+ * валидаторы HTTP для условного запроса и хеш контента
+ */
+@Data
+public class PageValidators {
+    // хеш контента страницы
+    private String contentHash;
+    // значение заголовка ETag, отправляется в заголовке If-None-Match
+    private String etag;
+    // значение заголовка Last-Modified, отправляется в заголовке If-Modified-Since
+    private String lastModified;
+}
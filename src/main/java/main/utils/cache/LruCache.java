@@ -0,0 +1,211 @@
+package main.utils.cache;
+
+import com.github.cliftonlabs.json_simple.JsonObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Потокобезопасный кеш ограниченного размера с вытеснением давно не использованных значений (LRU).
+ * <p> Кеш разбит на сегменты со своими блокировками и своим порядком вытеснения,
+ * поэтому потоки, обращающиеся к разным ключам, почти не ждут друг друга.
+ * Значения вычисляются вне блокировки, одно значение может быть вычислено несколько раз
+ * при одновременном обращении, поэтому функция вычисления не должна иметь побочных эффектов.
+ * <p> Размер кеша ограничивается количеством значений или суммарным весом значений,
+ * например их размером в байтах, вес значения не меняется после сохранения в кеше
+ * @param <K> тип ключа
+ * @param <V> тип значения
+ */
+public class LruCache<K, V> {
+    // количество сегментов, степень двойки
+    private static final int SEGMENTS_COUNT = 16;
+
+    // сегменты кеша
+    private final Segment<K, V>[] segments;
+    // количество найденных в кеше значений
+    private final LongAdder hits = new LongAdder();
+    // количество вычисленных значений
+    private final LongAdder misses = new LongAdder();
+    // количество вытесненных значений
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param capacity максимальное количество значений в кеше
+     */
+    public LruCache(int capacity) {
+        this(capacity, value -> 1);
+    }
+
+    /**
+     * @param maxWeight максимальный суммарный вес значений в кеше
+     * @param weigher функция вычисления веса значения
+     */
+    @SuppressWarnings("unchecked")
+    public LruCache(long maxWeight, ToLongFunction<V> weigher) {
+        long segmentMaxWeight = Math.max(1, (maxWeight + SEGMENTS_COUNT - 1) / SEGMENTS_COUNT);
+        segments = (Segment<K, V>[]) new Segment<?, ?>[SEGMENTS_COUNT];
+        for (int i = 0; i < SEGMENTS_COUNT; i++) {
+            segments[i] = new Segment<>(segmentMaxWeight, weigher, evictions);
+        }
+    }
+
+    /**
+     * @param key ключ
+     * @return значение из кеша, null если значения нет
+     */
+    public V get(K key) {
+        V value = segmentFor(key).get(key);
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Получение значения из кеша, если значения нет - оно вычисляется и сохраняется в кеше
+     * @param key ключ
+     * @param loader функция вычисления значения, null не сохраняется в кеше
+     * @return значение
+     */
+    public V get(K key, Function<K, V> loader) {
+        Segment<K, V> segment = segmentFor(key);
+        V value = segment.get(key);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = loader.apply(key);
+        if (value != null) {
+            segment.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * Сохранение значения в кеше
+     * @param key ключ
+     * @param value значение
+     */
+    public void put(K key, V value) {
+        segmentFor(key).put(key, value);
+    }
+
+    /**
+     * Удаление всех значений из кеша
+     */
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * @return количество значений в кеше
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return суммарный вес значений в кеше
+     */
+    public long weight() {
+        long weight = 0;
+        for (Segment<K, V> segment : segments) {
+            weight += segment.weight();
+        }
+        return weight;
+    }
+
+    /**
+     * @return статистика обращений к кешу
+     */
+    public JsonObject getStats() {
+        JsonObject result = new JsonObject();
+        long hitsCount = hits.sum();
+        long missesCount = misses.sum();
+        result.put("size", size());
+        result.put("weight", weight());
+        result.put("hits", hitsCount);
+        result.put("misses", missesCount);
+        result.put("evictions", evictions.sum());
+        result.put("hitRatio", hitsCount + missesCount == 0 ? 0.0 : (double) hitsCount / (hitsCount + missesCount));
+        return result;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return segments[hash & (SEGMENTS_COUNT - 1)];
+    }
+
+    /**
+     * Сегмент кеша - таблица, упорядоченная по времени последнего обращения
+     */
+    private static class Segment<K, V> {
+        // значения сегмента в порядке обращения, первым идет самое давнее
+        private final LinkedHashMap<K, V> map = new LinkedHashMap<>(16, 0.75f, true);
+        // максимальный суммарный вес значений сегмента
+        private final long maxWeight;
+        // функция вычисления веса значения
+        private final ToLongFunction<V> weigher;
+        // счетчик вытесненных значений
+        private final LongAdder evictions;
+        // суммарный вес значений сегмента
+        private long weight = 0;
+
+        private Segment(long maxWeight, ToLongFunction<V> weigher, LongAdder evictions) {
+            this.maxWeight = maxWeight;
+            this.weigher = weigher;
+            this.evictions = evictions;
+        }
+
+        private synchronized V get(K key) {
+            return map.get(key);
+        }
+
+        private synchronized void put(K key, V value) {
+            long valueWeight = weigher.applyAsLong(value);
+            V oldValue = valueWeight > maxWeight ? map.remove(key) : map.put(key, value);
+            if (oldValue != null) {
+                weight -= weigher.applyAsLong(oldValue);
+            }
+            if (valueWeight > maxWeight) {
+                // значение тяжелее всего сегмента не сохраняется
+                return;
+            }
+            weight += valueWeight;
+            // вытесняем самые давние значения, новое значение стоит последним
+            Iterator<V> iterator = map.values().iterator();
+            while (weight > maxWeight) {
+                V eldest = iterator.next();
+                weight -= weigher.applyAsLong(eldest);
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+
+        private synchronized void clear() {
+            map.clear();
+            weight = 0;
+        }
+
+        private synchronized int size() {
+            return map.size();
+        }
+
+        private synchronized long weight() {
+            return weight;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package main.utils.cache;
+
+import com.github.cliftonlabs.json_simple.JsonArray;
+import com.github.cliftonlabs.json_simple.JsonObject;
+import main.utils.index.SearchCursor;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кеш результатов поиска: страница результатов по набору лемм запроса, сайту и окну (позиция, offset, limit).
+ * <p> Каждый результат хранит поколение индекса, для которого он вычислен. Сервис записи страниц увеличивает
+ * поколение сайта после каждого изменения его страниц, поэтому устаревший результат не возвращается
+ * и перезаписывается при следующем запросе. Размер кеша ограничен суммарным размером результатов в байтах
+ */
+public class SearchResultCache {
+    // примерный размер служебных данных результата и элемента результата, байт
+    private static final int ENTRY_OVERHEAD = 256;
+
+    // результаты поиска
+    private final LruCache<Key, Entry> cache;
+    // количество запросов, ответ на которые целиком взят из кеша
+    private final LongAdder hits = new LongAdder();
+    // количество запросов, для которых из кеша взяты только найденные страницы
+    private final LongAdder rankingHits = new LongAdder();
+    // количество запросов, выполненных без кеша
+    private final LongAdder misses = new LongAdder();
+    // суммарное время запросов каждого вида, нс
+    private final LongAdder hitNanos = new LongAdder();
+    private final LongAdder rankingHitNanos = new LongAdder();
+    private final LongAdder missNanos = new LongAdder();
+
+    /**
+     * @param maxBytes максимальный суммарный размер результатов в кеше, байт
+     */
+    public SearchResultCache(long maxBytes) {
+        cache = new LruCache<>(maxBytes, Entry::getWeight);
+    }
+
+    /**
+     * @param key ключ запроса
+     * @param generation текущее поколение индекса сайта запроса
+     * @return результат из кеша, null если его нет или он вычислен для другого поколения индекса
+     */
+    public Entry get(Key key, long generation) {
+        Entry entry = cache.get(key);
+        return entry == null || entry.generation != generation ? null : entry;
+    }
+
+    /**
+     * Сохранение результата в кеше
+     * @param key ключ запроса
+     * @param entry результат
+     */
+    public void put(Key key, Entry entry) {
+        cache.put(key, entry);
+    }
+
+    /**
+     * Учет запроса, ответ на который целиком взят из кеша
+     * @param nanos время выполнения запроса
+     */
+    public void addHit(long nanos) {
+        hits.increment();
+        hitNanos.add(nanos);
+    }
+
+    /**
+     * Учет запроса, для которого из кеша взяты только найденные страницы
+     * @param nanos время выполнения запроса
+     */
+    public void addRankingHit(long nanos) {
+        rankingHits.increment();
+        rankingHitNanos.add(nanos);
+    }
+
+    /**
+     * Учет запроса, выполненного без кеша
+     * @param nanos время выполнения запроса
+     */
+    public void addMiss(long nanos) {
+        misses.increment();
+        missNanos.add(nanos);
+    }
+
+    /**
+     * @return статистика кеша для отображения в /statistics: доля попаданий, среднее время запросов
+     * с попаданием и без него и сэкономленное кешем время
+     */
+    public JsonObject getStats() {
+        JsonObject result = cache.getStats();
+        long hitsCount = hits.sum();
+        long rankingHitsCount = rankingHits.sum();
+        long missesCount = misses.sum();
+        long total = hitsCount + rankingHitsCount + missesCount;
+        double avgHitMs = getAverageMs(hitNanos.sum(), hitsCount);
+        double avgRankingHitMs = getAverageMs(rankingHitNanos.sum(), rankingHitsCount);
+        double avgMissMs = getAverageMs(missNanos.sum(), missesCount);
+        result.put("hits", hitsCount);
+        result.put("rankingHits", rankingHitsCount);
+        result.put("misses", missesCount);
+        result.put("hitRatio", total == 0 ? 0.0 : (double) (hitsCount + rankingHitsCount) / total);
+        result.put("avgHitMs", avgHitMs);
+        result.put("avgRankingHitMs", avgRankingHitMs);
+        result.put("avgMissMs", avgMissMs);
+        result.put("savedMs", missesCount == 0 ? 0.0 : Math.max(0.0, avgMissMs - avgHitMs) * hitsCount +
+                Math.max(0.0, avgMissMs - avgRankingHitMs) * rankingHitsCount);
+        return result;
+    }
+
+    private static double getAverageMs(long nanos, long count) {
+        return count == 0 ? 0.0 : nanos / 1_000_000.0 / count;
+    }
+
+    /**
+     * Ключ запроса: отсортированные идентификаторы лемм, сайт и окно результатов
+     */
+    public static class Key {
+        private final int[] lemmaIds;
+        private final int siteId;
+        private final SearchCursor after;
+        private final int offset;
+        private final int limit;
+        private final int hash;
+
+        /**
+         * @param lemmaIds идентификаторы лемм запроса
+         * @param siteId идентификатор сайта, 0 - поиск по всем сайтам
+         * @param after позиция в списке результатов, с которой начинается окно, null - начало списка
+         * @param offset сдвиг от начала списка результатов или от позиции
+         * @param limit количество результатов
+         */
+        public Key(Collection<Integer> lemmaIds, int siteId, SearchCursor after, int offset, int limit) {
+            this.lemmaIds = lemmaIds.stream().mapToInt(Integer::intValue).sorted().distinct().toArray();
+            this.siteId = siteId;
+            this.after = after;
+            this.offset = offset;
+            this.limit = limit;
+            this.hash = (((Arrays.hashCode(this.lemmaIds) * 31 + siteId) * 31 + Objects.hashCode(after)) * 31 +
+                    offset) * 31 + limit;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return siteId == key.siteId && offset == key.offset && limit == key.limit &&
+                    Objects.equals(after, key.after) && Arrays.equals(lemmaIds, key.lemmaIds);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Результат поиска: найденные страницы окна и готовые элементы ответа.
+     * <p> Фрагменты текста в элементах ответа зависят от написания запроса, поэтому результат хранит
+     * текст запроса, для которого они построены, при другом написании тех же лемм
+     * повторно используются только найденные страницы
+     */
+    public static class Entry {
+        // поколение индекса, для которого вычислен результат
+        private final long generation;
+        // общее количество найденных страниц
+        private final int count;
+        // идентификаторы страниц окна по убыванию релевантности
+        private final int[] pageIds;
+        // релевантность страниц окна
+        private final float[] scores;
+        // текст запроса, для которого построены элементы ответа
+        private final String query;
+        // элементы ответа
+        private final JsonArray items;
+        // примерный размер результата в памяти, байт
+        private final long weight;
+
+        public Entry(long generation, int count, int[] pageIds, float[] scores, String query, JsonArray items) {
+            this.generation = generation;
+            this.count = count;
+            this.pageIds = pageIds;
+            this.scores = scores;
+            this.query = query;
+            this.items = items;
+            long itemsWeight = 0;
+            for (Object item : items) {
+                itemsWeight += ENTRY_OVERHEAD;
+                for (Object value : ((Map<?, ?>) item).values()) {
+                    itemsWeight += value instanceof String ? ((String) value).length() * 2L : 16;
+                }
+            }
+            this.weight = ENTRY_OVERHEAD + query.length() * 2L + pageIds.length * 8L + itemsWeight;
+        }
+
+        public long getGeneration() {
+            return generation;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public int[] getPageIds() {
+            return pageIds;
+        }
+
+        public float[] getScores() {
+            return scores;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public JsonArray getItems() {
+            return items;
+        }
+
+        public long getWeight() {
+            return weight;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package main.utils.content;
+
+import java.io.IOException;
+
+/**
+ * Способ кодирования контента страницы для хранения в базе
+ */
+public interface ContentCodec {
+    /**
+     * @return имя способа кодирования, сохраняется в таблице page вместе с контентом
+     */
+    String getName();
+
+    /**
+     * @param data исходные данные
+     * @return закодированные данные
+     */
+    byte[] encode(byte[] data) throws IOException;
+
+    /**
+     * @param data закодированные данные
+     * @return исходные данные
+     */
+    byte[] decode(byte[] data) throws IOException;
+
+    /**
+     * Получение способа кодирования по имени из настроек или из таблицы page
+     * @param name имя способа кодирования: none, deflate или gzip
+     * @return обьект для кодирования контента
+     */
+    static ContentCodec forName(String name) {
+        switch (name == null ? "" : name.toLowerCase()) {
+            case PlainContentCodec.NAME:
+                return new PlainContentCodec();
+            case DeflateContentCodec.NAME:
+                return new DeflateContentCodec();
+            case GzipContentCodec.NAME:
+                return new GzipContentCodec();
+            default:
+                throw new IllegalArgumentException("Неизвестный способ кодирования контента: " + name);
+        }
+    }
+}
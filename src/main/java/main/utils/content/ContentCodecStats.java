@@ -0,0 +1,75 @@
+package main.utils.content;
+
+import com.github.cliftonlabs.json_simple.JsonObject;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Статистика кодирования контента страниц: размер до и после сжатия и скорость кодирования
+ */
+public class ContentCodecStats {
+    // количество закодированных страниц
+    private final LongAdder encodedPages = new LongAdder();
+    // размер исходного контента, байт
+    private final LongAdder rawBytes = new LongAdder();
+    // размер закодированного контента, байт
+    private final LongAdder encodedBytes = new LongAdder();
+    // суммарное время кодирования, нс
+    private final LongAdder encodeNanos = new LongAdder();
+    // количество раскодированных страниц
+    private final LongAdder decodedPages = new LongAdder();
+    // размер раскодированного контента, байт
+    private final LongAdder decodedBytes = new LongAdder();
+    // суммарное время раскодирования, нс
+    private final LongAdder decodeNanos = new LongAdder();
+
+    /**
+     * Учет кодирования страницы
+     * @param raw размер исходного контента
+     * @param encoded размер закодированного контента
+     * @param nanos время кодирования
+     */
+    public void addEncoded(long raw, long encoded, long nanos) {
+        encodedPages.increment();
+        rawBytes.add(raw);
+        encodedBytes.add(encoded);
+        encodeNanos.add(nanos);
+    }
+
+    /**
+     * Учет раскодирования страницы
+     * @param raw размер раскодированного контента
+     * @param nanos время раскодирования
+     */
+    public void addDecoded(long raw, long nanos) {
+        decodedPages.increment();
+        decodedBytes.add(raw);
+        decodeNanos.add(nanos);
+    }
+
+    /**
+     * @param codecName имя текущего способа кодирования
+     * @return статистика для отображения в /statistics
+     */
+    public JsonObject toJson(String codecName) {
+        JsonObject result = new JsonObject();
+        long raw = rawBytes.sum();
+        long encoded = encodedBytes.sum();
+        result.put("codec", codecName);
+        result.put("encodedPages", encodedPages.sum());
+        result.put("rawBytes", raw);
+        result.put("encodedBytes", encoded);
+        result.put("ratio", raw == 0 ? 1.0 : (double) encoded / raw);
+        result.put("encodeMBps", getThroughput(raw, encodeNanos.sum()));
+        result.put("decodedPages", decodedPages.sum());
+        result.put("decodeMBps", getThroughput(decodedBytes.sum(), decodeNanos.sum()));
+        return result;
+    }
+
+    /**
+     * @return скорость обработки, MB/s
+     */
+    private static double getThroughput(long bytes, long nanos) {
+        return nanos == 0 ? 0.0 : bytes * 1000.0 / nanos / 1.048576;
+    }
+}
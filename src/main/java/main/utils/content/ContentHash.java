@@ -0,0 +1,39 @@
+package main.utils.content;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Хеш контента страницы, по нему при повторном обходе сайта определяются неизменившиеся страницы
+ */
+public final class ContentHash {
+    // длина хеша в шестнадцатеричной записи
+    public static final int LENGTH = 64;
+    // алгоритм хеширования
+    private static final String ALGORITHM = "SHA-256";
+    // шестнадцатеричные цифры
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private ContentHash() {
+    }
+
+    /**
+     * @param data контент страницы
+     * @return хеш контента в шестнадцатеричной записи
+     */
+    public static String of(byte[] data) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] hash = digest.digest(data);
+        char[] result = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            result[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xF];
+            result[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xF];
+        }
+        return new String(result);
+    }
+}
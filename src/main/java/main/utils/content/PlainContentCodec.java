@@ -0,0 +1,21 @@
+package main.utils.content;
+
+/**
+ * Хранение контента без сжатия
+ */
+public class PlainContentCodec implements ContentCodec {
+    // имя способа кодирования
+    public static final String NAME = "none";
+
+    public String getName() {
+        return NAME;
+    }
+
+    public byte[] encode(byte[] data) {
+        return data;
+    }
+
+    public byte[] decode(byte[] data) {
+        return data;
+    }
+}
@@ -0,0 +1,219 @@
+package main.utils.index;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Обратный индекс в памяти: идентификатор леммы -> сжатый список страниц с рангами леммы.
+ * <p> Используется для поиска вместо запросов к таблице 'index', база остается основным хранилищем,
+ * индекс загружается из неё при запуске и обновляется после записи каждого пакета страниц
+ */
+public class InvertedIndex {
+    // списки страниц по идентификаторам лемм
+    private final ConcurrentHashMap<Integer, PostingList> lists = new ConcurrentHashMap<>();
+
+    /**
+     * Добавление или обновление рангов лемм на странице
+     * @param pageId идентификатор страницы
+     * @param ranks ранги лемм на странице: идентификатор леммы -> ранг
+     */
+    public void addPage(int pageId, Map<Integer, Float> ranks) {
+        ranks.forEach((lemmaId, rank) -> lists.compute(lemmaId, (k, list) -> {
+            if (list == null) {
+                list = new PostingList();
+            }
+            list.put(pageId, rank);
+            return list;
+        }));
+    }
+
+    /**
+     * Удаление страниц из индекса
+     * @param pageIds идентификаторы удаляемых страниц
+     * @param lemmaIds идентификаторы лемм, встречающихся на удаляемых страницах
+     */
+    public void removePages(Set<Integer> pageIds, Collection<Integer> lemmaIds) {
+        if (pageIds.isEmpty()) {
+            return;
+        }
+        // пустые списки удаляются из индекса
+        for (Integer lemmaId : lemmaIds) {
+            lists.computeIfPresent(lemmaId, (k, list) -> {
+                list.removePages(pageIds);
+                return list.size() == 0 ? null : list;
+            });
+        }
+    }
+
+    /**
+     * @param lemmaId идентификатор леммы
+     * @return снимок списка страниц для леммы
+     */
+    public PostingsSnapshot getPostings(int lemmaId) {
+        PostingList list = lists.get(lemmaId);
+        return list == null ? PostingsSnapshot.EMPTY : list.snapshot();
+    }
+
+    /**
+     * @param lemmaId идентификатор леммы
+     * @return количество страниц, на которых встречается лемма
+     */
+    public int getPagesCount(int lemmaId) {
+        PostingList list = lists.get(lemmaId);
+        return list == null ? 0 : list.size();
+    }
+
+    /**
+     * Поиск лучших страниц, на которых встречаются все заданные леммы.
+     * <p> Релевантность страницы - сумма рангов лемм. Для каждой найденной страницы сначала
+     * считается верхняя граница релевантности по максимальным рангам блоков списков,
+     * если она не превышает релевантность худшей из уже отобранных страниц - точная релевантность
+     * не считается и страница только учитывается в общем количестве.
+     * <p> Ранги суммируются в double в порядке идентификаторов лемм и округляются до float один раз,
+     * поэтому релевантность страницы не зависит от размеров списков и порядка лемм в запросе,
+     * а верхняя граница, посчитанная так же, не меньше релевантности
+     * <p> Если задана позиция в списке результатов, отбираются лучшие страницы после неё,
+     * общее количество найденных страниц считается по всему списку
+     * @param lemmaIds идентификаторы лемм
+     * @param after позиция в списке результатов, null - с начала списка
+     * @param limit количество лучших страниц
+     * @return общее количество найденных страниц и лучшие страницы
+     */
+    public TopPages search(Collection<Integer> lemmaIds, SearchCursor after, int limit) {
+        TopPages result = new TopPages(limit);
+        if (lemmaIds.isEmpty()) {
+            return result;
+        }
+        // курсоры в порядке идентификаторов лемм для суммирования рангов
+        PostingCursor[] rankCursors = lemmaIds.stream().sorted()
+                .map(lemmaId -> getPostings(lemmaId).cursor()).toArray(PostingCursor[]::new);
+        // начинаем пересечение с самого короткого списка
+        PostingCursor[] cursors = rankCursors.clone();
+        Arrays.sort(cursors, Comparator.comparingInt(PostingCursor::size));
+        PostingCursor lead = cursors[0];
+        // найденных страниц не больше, чем страниц в самом коротком списке
+        result = new TopPages(Math.min(limit, lead.size()));
+        while (lead.next()) {
+            int pageId = lead.pageId();
+            boolean found = true;
+            for (int i = 1; i < cursors.length; i++) {
+                if (!cursors[i].advance(pageId)) {
+                    return result;
+                }
+                if (cursors[i].pageId() != pageId) {
+                    found = false;
+                    break;
+                }
+            }
+            if (!found) {
+                continue;
+            }
+            result.count();
+            double upperBound = 0.0;
+            for (PostingCursor cursor : rankCursors) {
+                upperBound += cursor.blockMaxRank();
+            }
+            if (!result.isCompetitive((float) upperBound, pageId)) {
+                continue;
+            }
+            double rankSum = 0.0;
+            for (PostingCursor cursor : rankCursors) {
+                rankSum += cursor.rank();
+            }
+            float relevance = (float) rankSum;
+            if (after != null && !after.isBefore(relevance, pageId)) {
+                continue;
+            }
+            result.offer(pageId, relevance);
+        }
+        return result;
+    }
+
+    /**
+     * @return количество лемм в индексе
+     */
+    public int getLemmasCount() {
+        return lists.size();
+    }
+
+    /**
+     * @return количество записей и размер сжатых данных в байтах
+     */
+    public long[] getStats() {
+        long entries = 0;
+        long bytes = 0;
+        for (PostingList list : lists.values()) {
+            PostingsSnapshot postings = list.snapshot();
+            entries += postings.size();
+            bytes += postings.getBytes();
+        }
+        return new long[]{entries, bytes};
+    }
+
+    /**
+     * Удаление всех данных индекса
+     */
+    public void clear() {
+        lists.clear();
+    }
+
+    /**
+     * Построитель индекса для загрузки из базы: накапливает записи в массивах
+     * и кодирует каждый список один раз после загрузки всех записей
+     */
+    public static class Loader {
+        // загружаемый индекс
+        private final InvertedIndex index;
+        // накопленные записи по идентификаторам лемм
+        private final HashMap<Integer, Buffer> buffers = new HashMap<>();
+
+        public Loader(InvertedIndex index) {
+            this.index = index;
+        }
+
+        /**
+         * Добавление записи индекса
+         * @param lemmaId идентификатор леммы
+         * @param pageId идентификатор страницы
+         * @param rank ранг леммы на странице
+         */
+        public void add(int lemmaId, int pageId, float rank) {
+            buffers.computeIfAbsent(lemmaId, k -> new Buffer()).add(pageId, rank);
+        }
+
+        /**
+         * Кодирование накопленных списков и замена ими содержимого индекса
+         */
+        public void finish() {
+            index.clear();
+            Iterator<Map.Entry<Integer, Buffer>> iterator = buffers.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, Buffer> entry = iterator.next();
+                Buffer buffer = entry.getValue();
+                PostingList list = new PostingList();
+                list.load(buffer.pageIds, buffer.ranks, buffer.size);
+                index.lists.put(entry.getKey(), list);
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Растущие массивы записей одной леммы
+     */
+    private static class Buffer {
+        private int[] pageIds = new int[8];
+        private float[] ranks = new float[8];
+        private int size = 0;
+
+        private void add(int pageId, float rank) {
+            if (size == pageIds.length) {
+                pageIds = Arrays.copyOf(pageIds, size * 2);
+                ranks = Arrays.copyOf(ranks, size * 2);
+            }
+            pageIds[size] = pageId;
+            ranks[size] = rank;
+            size++;
+        }
+    }
+}
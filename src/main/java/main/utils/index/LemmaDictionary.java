@@ -0,0 +1,222 @@
+package main.utils.index;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Словарь лемм в памяти: имя леммы <-> идентификатор и частота.
+ * <p> Загружается из таблицы lemma при запуске, поиск лемм по имени не обращается к базе и не требует блокировок.
+ * Идентификаторы новых лемм выдаются словарем, а не генератором Hibernate,
+ * поэтому новые леммы записываются в базу пакетом без запроса идентификатора для каждой.
+ * Изменения пакета страниц собираются в {@link Changes} и применяются к словарю только после записи в базу
+ */
+public class LemmaDictionary {
+    // леммы по имени
+    private final ConcurrentHashMap<String, Entry> byName = new ConcurrentHashMap<>();
+    // леммы по идентификатору
+    private final ConcurrentHashMap<Integer, Entry> byId = new ConcurrentHashMap<>();
+    // последний выданный идентификатор
+    private final AtomicInteger lastId = new AtomicInteger();
+
+    /**
+     * Лемма в словаре
+     */
+    public static class Entry {
+        // идентификатор леммы
+        private final int id;
+        // нормальная форма слова
+        private final String lemma;
+        // количество страниц, на которых слово встречается хотя бы один раз
+        private final AtomicInteger frequency;
+
+        private Entry(int id, String lemma, int frequency) {
+            this.id = id;
+            this.lemma = lemma;
+            this.frequency = new AtomicInteger(frequency);
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getLemma() {
+            return lemma;
+        }
+
+        public int getFrequency() {
+            return frequency.get();
+        }
+    }
+
+    /**
+     * Добавление леммы при загрузке словаря из базы, лемма с тем же идентификатором заменяется
+     * @param id идентификатор леммы
+     * @param lemma нормальная форма слова
+     * @param frequency частота леммы
+     */
+    public void load(int id, String lemma, int frequency) {
+        put(new Entry(id, lemma, frequency));
+        lastId.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * @param lemma нормальная форма слова
+     * @return лемма или null, если её нет в словаре
+     */
+    public Entry get(String lemma) {
+        return byName.get(lemma);
+    }
+
+    /**
+     * @param id идентификатор леммы
+     * @return лемма или null, если её нет в словаре
+     */
+    public Entry get(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * @return все леммы словаря
+     */
+    public Collection<Entry> entries() {
+        return Collections.unmodifiableCollection(byId.values());
+    }
+
+    /**
+     * @return количество лемм в словаре
+     */
+    public int size() {
+        return byName.size();
+    }
+
+    /**
+     * @return новый набор изменений словаря
+     */
+    public Changes newChanges() {
+        return new Changes();
+    }
+
+    /**
+     * Применение изменений к словарю, вызывается после записи изменений в базу,
+     * леммы, которые больше не встречаются ни на одной странице, удаляются
+     * @param changes изменения
+     */
+    public void apply(Changes changes) {
+        changes.getAdded().forEach(this::put);
+        ArrayList<Integer> unused = new ArrayList<>();
+        changes.frequencyDeltas.forEach((id, delta) -> {
+            Entry entry = byId.get(id);
+            if (entry != null && entry.frequency.addAndGet(delta) <= 0) {
+                unused.add(id);
+            }
+        });
+        remove(unused);
+    }
+
+    /**
+     * Удаление лемм из словаря
+     * @param ids идентификаторы лемм
+     */
+    public void remove(Collection<Integer> ids) {
+        for (Integer id : ids) {
+            Entry entry = byId.remove(id);
+            if (entry == null) {
+                continue;
+            }
+            byName.remove(entry.lemma, entry);
+        }
+    }
+
+    private void put(Entry entry) {
+        byName.put(entry.lemma, entry);
+        byId.put(entry.id, entry);
+    }
+
+    /**
+     * Изменения словаря для пакета страниц: новые леммы и изменения частоты существующих.
+     * <p> Частота меняется на количество страниц, на которых лемма появилась или с которых пропала,
+     * лемма, частота которой становится нулевой, удаляется.
+     * <p> Используется одним потоком, до вызова {@link #apply(Changes)} словарь не изменяется
+     */
+    public class Changes {
+        // новые леммы по имени
+        private final LinkedHashMap<String, Entry> added = new LinkedHashMap<>();
+        // новые леммы по идентификатору
+        private final HashMap<Integer, Entry> addedById = new HashMap<>();
+        // изменения частоты существующих лемм: идентификатор леммы -> изменение
+        private final HashMap<Integer, Integer> frequencyDeltas = new HashMap<>();
+
+        private Changes() {
+        }
+
+        /**
+         * Получение идентификатора леммы, новая лемма получает следующий свободный идентификатор
+         * и нулевую частоту
+         * @param lemma нормальная форма слова
+         * @return идентификатор леммы
+         */
+        public int resolve(String lemma) {
+            Entry entry = byName.get(lemma);
+            if (entry == null) {
+                entry = added.get(lemma);
+            }
+            if (entry == null) {
+                entry = new Entry(lastId.incrementAndGet(), lemma, 0);
+                added.put(lemma, entry);
+                addedById.put(entry.id, entry);
+            }
+            return entry.id;
+        }
+
+        /**
+         * Изменение частоты леммы
+         * @param id идентификатор леммы
+         * @param delta изменение частоты
+         */
+        public void addFrequency(int id, int delta) {
+            Entry entry = addedById.get(id);
+            if (entry != null) {
+                entry.frequency.addAndGet(delta);
+            } else {
+                frequencyDeltas.merge(id, delta, Integer::sum);
+            }
+        }
+
+        /**
+         * @param id идентификатор существующей леммы
+         * @return true если после применения изменений лемма не встречается ни на одной странице
+         */
+        public boolean isUnused(int id) {
+            Entry entry = byId.get(id);
+            return entry != null && entry.getFrequency() + frequencyDeltas.getOrDefault(id, 0) <= 0;
+        }
+
+        /**
+         * @return новые леммы, частота новой леммы - количество страниц, на которых она встречается
+         */
+        public List<Entry> getAdded() {
+            ArrayList<Entry> result = new ArrayList<>(added.size());
+            for (Entry entry : added.values()) {
+                if (entry.getFrequency() > 0) {
+                    result.add(entry);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return изменения частоты существующих лемм: идентификатор леммы -> изменение
+         */
+        public Map<Integer, Integer> getFrequencyDeltas() {
+            return frequencyDeltas;
+        }
+
+        /**
+         * @return true если изменений нет
+         */
+        public boolean isEmpty() {
+            return added.isEmpty() && frequencyDeltas.isEmpty();
+        }
+    }
+}
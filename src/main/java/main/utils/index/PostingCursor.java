@@ -0,0 +1,227 @@
+package main.utils.index;
+
+/**
+ * Курсор для последовательного чтения сжатого списка страниц с возможностью пропуска блоков.
+ * <p> Вместе со сжатым списком читается буфер изменений: записи буфера заменяют записи списка
+ * с тем же идентификатором страницы, удаленные в буфере страницы пропускаются
+ */
+public class PostingCursor {
+    // значение идентификатора страницы после окончания списка
+    public static final int NO_MORE_PAGES = Integer.MAX_VALUE;
+
+    // читаемый список
+    private final Postings postings;
+    // идентификаторы страниц буфера изменений по возрастанию
+    private final int[] deltaPageIds;
+    // ранги леммы на страницах буфера изменений, NaN - страница удалена
+    private final float[] deltaRanks;
+    // количество записей в буфере изменений
+    private final int deltaSize;
+    // максимальный ранг леммы в буфере изменений
+    private final float deltaMaxRank;
+    // количество страниц в списке с учетом изменений
+    private final int size;
+    // номер текущей записи сжатого списка
+    private int index = -1;
+    // позиция следующей записи в массиве данных
+    private int pos = 0;
+    // идентификатор страницы текущей записи сжатого списка
+    private int listPageId = 0;
+    // ранг леммы в текущей записи сжатого списка
+    private float listRank = 0.0f;
+    // номер текущей записи буфера изменений
+    private int deltaIndex = 0;
+    // начато ли чтение
+    private boolean started = false;
+    // идентификатор текущей страницы
+    private int pageId = 0;
+    // ранг леммы на текущей странице
+    private float rank = 0.0f;
+
+    PostingCursor(Postings postings, int[] deltaPageIds, float[] deltaRanks, int deltaSize, int size) {
+        this.postings = postings;
+        this.deltaPageIds = deltaPageIds;
+        this.deltaRanks = deltaRanks;
+        this.deltaSize = deltaSize;
+        this.size = size;
+        float maxRank = 0.0f;
+        for (int i = 0; i < deltaSize; i++) {
+            if (!Float.isNaN(deltaRanks[i])) {
+                maxRank = Math.max(maxRank, deltaRanks[i]);
+            }
+        }
+        this.deltaMaxRank = maxRank;
+    }
+
+    /**
+     * @return идентификатор текущей страницы, {@link #NO_MORE_PAGES} если список закончился
+     */
+    public int pageId() {
+        return pageId;
+    }
+
+    /**
+     * @return ранг леммы на текущей странице
+     */
+    public float rank() {
+        return rank;
+    }
+
+    /**
+     * @return количество записей в списке
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Переход к следующей записи
+     * @return false если список закончился
+     */
+    public boolean next() {
+        if (!started) {
+            started = true;
+            nextInList();
+        } else if (pageId != NO_MORE_PAGES) {
+            if (listPageId() == pageId) {
+                nextInList();
+            }
+            if (deltaPageId() == pageId) {
+                deltaIndex++;
+            }
+        }
+        return settle();
+    }
+
+    /**
+     * Переход к первой записи с идентификатором страницы не меньше заданного,
+     * блоки, в которых все страницы меньше заданной, пропускаются без декодирования
+     * @param target идентификатор страницы
+     * @return false если список закончился
+     */
+    public boolean advance(int target) {
+        if (started && pageId >= target) {
+            return pageId != NO_MORE_PAGES;
+        }
+        started = true;
+        advanceInList(target);
+        while (deltaIndex < deltaSize && deltaPageIds[deltaIndex] < target) {
+            deltaIndex++;
+        }
+        return settle();
+    }
+
+    /**
+     * @return максимальный ранг леммы в блоке текущей записи с учетом буфера изменений
+     */
+    public float blockMaxRank() {
+        if (pageId == NO_MORE_PAGES) {
+            return 0.0f;
+        }
+        float blockMaxRank = index >= postings.size ? 0.0f :
+                postings.blockMaxRanks[Math.max(index, 0) / Postings.BLOCK_SIZE];
+        return Math.max(blockMaxRank, deltaMaxRank);
+    }
+
+    /**
+     * @return последний идентификатор страницы в блоке текущей записи
+     */
+    public int blockLastPageId() {
+        if (index >= postings.size) {
+            return NO_MORE_PAGES;
+        }
+        return postings.blockLastPageIds[Math.max(index, 0) / Postings.BLOCK_SIZE];
+    }
+
+    /**
+     * Выбор текущей записи из текущих записей сжатого списка и буфера изменений
+     * @return false если список закончился
+     */
+    private boolean settle() {
+        while (true) {
+            int listPageId = listPageId();
+            int deltaPageId = deltaPageId();
+            if (listPageId == NO_MORE_PAGES && deltaPageId == NO_MORE_PAGES) {
+                pageId = NO_MORE_PAGES;
+                return false;
+            }
+            if (deltaPageId > listPageId) {
+                pageId = listPageId;
+                rank = listRank;
+                return true;
+            }
+            float deltaRank = deltaRanks[deltaIndex];
+            if (!Float.isNaN(deltaRank)) {
+                pageId = deltaPageId;
+                rank = deltaRank;
+                return true;
+            }
+            // страница удалена: пропускаем её в буфере и в сжатом списке
+            if (listPageId == deltaPageId) {
+                nextInList();
+            }
+            deltaIndex++;
+        }
+    }
+
+    /**
+     * @return идентификатор страницы текущей записи сжатого списка, {@link #NO_MORE_PAGES} если он закончился
+     */
+    private int listPageId() {
+        return index < 0 || index >= postings.size ? NO_MORE_PAGES : listPageId;
+    }
+
+    /**
+     * @return идентификатор страницы текущей записи буфера изменений, {@link #NO_MORE_PAGES} если он закончился
+     */
+    private int deltaPageId() {
+        return deltaIndex < deltaSize ? deltaPageIds[deltaIndex] : NO_MORE_PAGES;
+    }
+
+    /**
+     * Переход к следующей записи сжатого списка
+     */
+    private void nextInList() {
+        if (index >= postings.size) {
+            return;
+        }
+        index++;
+        if (index >= postings.size) {
+            return;
+        }
+        long delta = postings.readVarInt(pos);
+        long rankValue = postings.readVarInt((int) (delta >>> 32));
+        listPageId += (int) delta;
+        listRank = Postings.toRank((int) rankValue);
+        pos = (int) (rankValue >>> 32);
+    }
+
+    /**
+     * Переход к первой записи сжатого списка с идентификатором страницы не меньше заданного
+     * @param target идентификатор страницы
+     */
+    private void advanceInList(int target) {
+        if (index >= 0 && index < postings.size && listPageId >= target) {
+            return;
+        }
+        int block = Math.max(index, 0) / Postings.BLOCK_SIZE;
+        if (block < postings.blockLastPageIds.length && postings.blockLastPageIds[block] < target) {
+            while (block < postings.blockLastPageIds.length && postings.blockLastPageIds[block] < target) {
+                block++;
+            }
+            if (block == postings.blockLastPageIds.length) {
+                index = postings.size;
+                return;
+            }
+            index = block * Postings.BLOCK_SIZE - 1;
+            pos = postings.blockOffsets[block];
+            listPageId = block > 0 ? postings.blockLastPageIds[block - 1] : 0;
+        }
+        while (index < postings.size) {
+            nextInList();
+            if (index < postings.size && listPageId >= target) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package main.utils.index;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Изменяемый список страниц для одной леммы.
+ * <p> Новые и удаленные записи накапливаются в буфере изменений, который читается вместе со сжатым списком
+ * и переносится в него только при переполнении, поэтому чтение и удаление страниц не требуют повторного
+ * кодирования всего списка. Читающие потоки получают неизменяемый снимок {@link PostingsSnapshot}
+ */
+public class PostingList {
+    // максимальный размер буфера изменений
+    private static final int MAX_PENDING = 1024;
+    // значение ранга в буфере изменений для удаленной страницы
+    private static final float REMOVED = Float.NaN;
+
+    // сжатый список страниц
+    private Postings postings = Postings.EMPTY;
+    // изменения, ещё не перенесенные в сжатый список: идентификатор страницы -> ранг леммы или REMOVED
+    private TreeMap<Integer, Float> pending;
+    // количество страниц в списке с учетом изменений
+    private int size;
+    // снимок списка, сбрасывается при изменении
+    private PostingsSnapshot snapshot = PostingsSnapshot.EMPTY;
+
+    /**
+     * Добавление или обновление ранга леммы на странице
+     * @param pageId идентификатор страницы
+     * @param rank ранг леммы на странице
+     */
+    public synchronized void put(int pageId, float rank) {
+        if (!contains(pageId)) {
+            size++;
+        }
+        setPending(pageId, Postings.round(rank));
+    }
+
+    /**
+     * Удаление страниц из списка, при удалении большого количества страниц список кодируется заново
+     * @param pageIds идентификаторы удаляемых страниц
+     */
+    public synchronized void removePages(Set<Integer> pageIds) {
+        if (pageIds.size() >= MAX_PENDING) {
+            merge(pageIds);
+            return;
+        }
+        for (Integer pageId : pageIds) {
+            if (contains(pageId)) {
+                size--;
+                setPending(pageId, REMOVED);
+            }
+        }
+    }
+
+    /**
+     * @return количество страниц в списке
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return неизменяемый снимок списка с учетом всех изменений
+     */
+    public synchronized PostingsSnapshot snapshot() {
+        if (snapshot == null) {
+            int[] deltaPageIds = new int[pending.size()];
+            float[] deltaRanks = new float[pending.size()];
+            int i = 0;
+            for (Map.Entry<Integer, Float> entry : pending.entrySet()) {
+                deltaPageIds[i] = entry.getKey();
+                deltaRanks[i] = entry.getValue();
+                i++;
+            }
+            snapshot = new PostingsSnapshot(postings, deltaPageIds, deltaRanks, i, size);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Замена содержимого списка, используется при загрузке индекса из базы
+     * @param pageIds идентификаторы страниц, порядок не важен
+     * @param ranks ранги леммы на страницах
+     * @param size количество записей
+     */
+    public synchronized void load(int[] pageIds, float[] ranks, int size) {
+        long[] entries = new long[size];
+        for (int i = 0; i < size; i++) {
+            entries[i] = ((long) pageIds[i] << 32) | (Float.floatToRawIntBits(ranks[i]) & 0xFFFFFFFFL);
+        }
+        Arrays.sort(entries);
+        int[] sortedPageIds = new int[size];
+        float[] sortedRanks = new float[size];
+        int count = 0;
+        for (long entry : entries) {
+            int pageId = (int) (entry >>> 32);
+            if (count > 0 && sortedPageIds[count - 1] == pageId) {
+                count--;
+            }
+            sortedPageIds[count] = pageId;
+            sortedRanks[count] = Float.intBitsToFloat((int) entry);
+            count++;
+        }
+        setPostings(Postings.encode(sortedPageIds, sortedRanks, count));
+    }
+
+    /**
+     * @param pageId идентификатор страницы
+     * @return true если страница есть в списке с учетом изменений
+     */
+    private boolean contains(int pageId) {
+        Float rank = pending == null ? null : pending.get(pageId);
+        return rank != null ? !Float.isNaN(rank) : postings.contains(pageId);
+    }
+
+    /**
+     * Запись изменения в буфер, при переполнении буфер переносится в сжатый список
+     * @param pageId идентификатор страницы
+     * @param rank ранг леммы на странице или REMOVED
+     */
+    private void setPending(int pageId, float rank) {
+        if (pending == null) {
+            pending = new TreeMap<>();
+        }
+        pending.put(pageId, rank);
+        snapshot = null;
+        if (pending.size() >= MAX_PENDING) {
+            merge(null);
+        }
+    }
+
+    /**
+     * Замена сжатого списка, буфер изменений очищается
+     * @param postings новый сжатый список
+     */
+    private void setPostings(Postings postings) {
+        this.postings = postings;
+        pending = null;
+        size = postings.size();
+        snapshot = new PostingsSnapshot(postings, PostingsSnapshot.NO_DELTA, new float[0], 0, size);
+    }
+
+    /**
+     * Слияние сжатого списка с буфером изменений
+     * @param removedPageIds идентификаторы удаляемых страниц, может быть null
+     */
+    private void merge(Set<Integer> removedPageIds) {
+        int capacity = postings.size() + (pending == null ? 0 : pending.size());
+        int[] pageIds = new int[capacity];
+        float[] ranks = new float[capacity];
+        int count = 0;
+        PostingCursor cursor = postings.cursor();
+        boolean hasCurrent = cursor.next();
+        Map.Entry<Integer, Float> entry = pending == null ? null : pending.pollFirstEntry();
+        while (hasCurrent || entry != null) {
+            int pageId;
+            float rank;
+            if (entry == null || (hasCurrent && cursor.pageId() < entry.getKey())) {
+                pageId = cursor.pageId();
+                rank = cursor.rank();
+                hasCurrent = cursor.next();
+            } else {
+                if (hasCurrent && cursor.pageId() == entry.getKey()) {
+                    hasCurrent = cursor.next();
+                }
+                pageId = entry.getKey();
+                rank = entry.getValue();
+                entry = pending.pollFirstEntry();
+            }
+            if (!Float.isNaN(rank) && (removedPageIds == null || !removedPageIds.contains(pageId))) {
+                pageIds[count] = pageId;
+                ranks[count] = rank;
+                count++;
+            }
+        }
+        setPostings(Postings.encode(pageIds, ranks, count));
+    }
+}
@@ -0,0 +1,186 @@
+package main.utils.index;
+
+import java.util.Arrays;
+
+/**
+ * Неизменяемый сжатый список страниц (posting list) для одной леммы,
+ * отсортированный по возрастанию идентификатора страницы.
+ * <p> Каждая запись хранится как разница с идентификатором предыдущей страницы и ранг леммы на странице
+ * в виде целого числа сотых долей, оба значения записаны в формате varint,
+ * поэтому запись обычно занимает 2-4 байта.
+ * <p> Записи разбиты на блоки по {@value #BLOCK_SIZE}, для каждого блока хранится смещение в массиве байт,
+ * последний идентификатор страницы и максимальный ранг, что позволяет пропускать блоки при поиске
+ */
+public final class Postings {
+    // количество записей в блоке
+    public static final int BLOCK_SIZE = 128;
+    // множитель для хранения ранга в виде целого числа
+    private static final float RANK_SCALE = 100.0f;
+    // пустой список
+    public static final Postings EMPTY = new Postings(0, new byte[0], new int[0], new int[0], new float[0]);
+
+    // количество записей
+    final int size;
+    // закодированные записи
+    final byte[] data;
+    // смещения начала блоков в массиве data
+    final int[] blockOffsets;
+    // последние идентификаторы страниц блоков
+    final int[] blockLastPageIds;
+    // максимальные ранги лемм в блоках
+    final float[] blockMaxRanks;
+
+    private Postings(int size, byte[] data, int[] blockOffsets, int[] blockLastPageIds, float[] blockMaxRanks) {
+        this.size = size;
+        this.data = data;
+        this.blockOffsets = blockOffsets;
+        this.blockLastPageIds = blockLastPageIds;
+        this.blockMaxRanks = blockMaxRanks;
+    }
+
+    /**
+     * Кодирование списка страниц
+     * @param pageIds идентификаторы страниц, отсортированные по возрастанию без повторов
+     * @param ranks ранги леммы на страницах
+     * @param size количество записей
+     * @return сжатый список
+     */
+    public static Postings encode(int[] pageIds, float[] ranks, int size) {
+        if (size == 0) {
+            return EMPTY;
+        }
+        int blocksCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] blockOffsets = new int[blocksCount];
+        int[] blockLastPageIds = new int[blocksCount];
+        float[] blockMaxRanks = new float[blocksCount];
+        byte[] data = new byte[size * 4];
+        int pos = 0;
+        int prevPageId = 0;
+        for (int i = 0; i < size; i++) {
+            int block = i / BLOCK_SIZE;
+            if (i % BLOCK_SIZE == 0) {
+                blockOffsets[block] = pos;
+            }
+            if (data.length - pos < 10) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            int rank = toStoredRank(ranks[i]);
+            pos = writeVarInt(data, pos, pageIds[i] - prevPageId);
+            pos = writeVarInt(data, pos, rank);
+            prevPageId = pageIds[i];
+            blockLastPageIds[block] = pageIds[i];
+            blockMaxRanks[block] = Math.max(blockMaxRanks[block], rank / RANK_SCALE);
+        }
+        return new Postings(size, Arrays.copyOf(data, pos), blockOffsets, blockLastPageIds, blockMaxRanks);
+    }
+
+    /**
+     * @return количество записей
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return размер закодированных данных в байтах
+     */
+    public long getBytes() {
+        return data.length + blockOffsets.length * 12L;
+    }
+
+    /**
+     * @return максимальный ранг леммы среди всех страниц списка
+     */
+    public float getMaxRank() {
+        float maxRank = 0.0f;
+        for (float rank : blockMaxRanks) {
+            maxRank = Math.max(maxRank, rank);
+        }
+        return maxRank;
+    }
+
+    /**
+     * @return курсор для последовательного чтения записей
+     */
+    public PostingCursor cursor() {
+        return new PostingCursor(this, PostingsSnapshot.NO_DELTA, new float[0], 0, size);
+    }
+
+    /**
+     * Проверка наличия страницы в списке, декодируется только блок, в котором может находиться страница
+     * @param pageId идентификатор страницы
+     * @return true если страница есть в списке
+     */
+    boolean contains(int pageId) {
+        int block = Arrays.binarySearch(blockLastPageIds, pageId);
+        if (block >= 0) {
+            return true;
+        }
+        block = -block - 1;
+        if (block == blockLastPageIds.length) {
+            return false;
+        }
+        int current = block > 0 ? blockLastPageIds[block - 1] : 0;
+        int pos = blockOffsets[block];
+        int end = Math.min(size, (block + 1) * BLOCK_SIZE);
+        for (int i = block * BLOCK_SIZE; i < end; i++) {
+            long delta = readVarInt(pos);
+            current += (int) delta;
+            if (current >= pageId) {
+                return current == pageId;
+            }
+            pos = (int) (readVarInt((int) (delta >>> 32)) >>> 32);
+        }
+        return false;
+    }
+
+    /**
+     * Чтение числа в формате varint
+     * @param pos позиция в массиве data
+     * @return значение в младших 32 битах и новая позиция в старших 32 битах
+     */
+    long readVarInt(int pos) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return ((long) pos << 32) | (value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param value целое число в формате varint
+     * @return ранг
+     */
+    static float toRank(int value) {
+        return value / RANK_SCALE;
+    }
+
+    /**
+     * @param rank ранг
+     * @return ранг в виде целого числа сотых долей, как он хранится в списке
+     */
+    static int toStoredRank(float rank) {
+        return Math.max(0, Math.round(rank * RANK_SCALE));
+    }
+
+    /**
+     * @param rank ранг
+     * @return ранг, округленный так же, как при хранении в списке
+     */
+    static float round(float rank) {
+        return toRank(toStoredRank(rank));
+    }
+
+    private static int writeVarInt(byte[] data, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[pos++] = (byte) value;
+        return pos;
+    }
+}
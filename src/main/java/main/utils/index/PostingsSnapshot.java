@@ -0,0 +1,54 @@
+package main.utils.index;
+
+/**
+ * Неизменяемый снимок списка страниц для одной леммы: сжатый список и буфер изменений,
+ * ещё не перенесенных в сжатый список.
+ * <p> Буфер изменений хранится отдельно и читается курсором вместе со сжатым списком,
+ * поэтому снимок не требует повторного кодирования всего списка
+ */
+public final class PostingsSnapshot {
+    // пустой буфер изменений
+    static final int[] NO_DELTA = new int[0];
+    // пустой снимок
+    public static final PostingsSnapshot EMPTY = new PostingsSnapshot(Postings.EMPTY, NO_DELTA, new float[0], 0, 0);
+
+    // сжатый список
+    private final Postings postings;
+    // идентификаторы страниц буфера изменений по возрастанию
+    private final int[] deltaPageIds;
+    // ранги леммы на страницах буфера изменений, NaN - страница удалена
+    private final float[] deltaRanks;
+    // количество записей в буфере изменений
+    private final int deltaSize;
+    // количество страниц в списке с учетом изменений
+    private final int size;
+
+    PostingsSnapshot(Postings postings, int[] deltaPageIds, float[] deltaRanks, int deltaSize, int size) {
+        this.postings = postings;
+        this.deltaPageIds = deltaPageIds;
+        this.deltaRanks = deltaRanks;
+        this.deltaSize = deltaSize;
+        this.size = size;
+    }
+
+    /**
+     * @return количество страниц в списке
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return размер сжатых данных и буфера изменений в байтах
+     */
+    public long getBytes() {
+        return postings.getBytes() + deltaSize * 8L;
+    }
+
+    /**
+     * @return курсор для последовательного чтения записей сжатого списка и буфера изменений
+     */
+    public PostingCursor cursor() {
+        return new PostingCursor(postings, deltaPageIds, deltaRanks, deltaSize, size);
+    }
+}
@@ -0,0 +1,87 @@
+package main.utils.index;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+
+/**
+ * Позиция в списке результатов поиска: релевантность и идентификатор последней выданной страницы.
+ * <p> Следующая страница результатов ищется по тому же запросу среди страниц, которые стоят после этой позиции
+ * (меньше релевантность или та же релевантность и больше идентификатор), поэтому для дальних страниц
+ * результатов отбирается столько же страниц, сколько для первой, а не offset + limit.
+ * Клиенту позиция передается как непрозрачная строка
+ */
+public class SearchCursor {
+    // версия формата строки позиции
+    private static final byte VERSION = 1;
+    // размер данных позиции: версия, релевантность, идентификатор страницы
+    private static final int SIZE = 1 + Float.BYTES + Integer.BYTES;
+
+    // релевантность последней выданной страницы
+    private final float score;
+    // идентификатор последней выданной страницы
+    private final int pageId;
+
+    /**
+     * @param score релевантность последней выданной страницы
+     * @param pageId идентификатор последней выданной страницы
+     */
+    public SearchCursor(float score, int pageId) {
+        this.score = score;
+        this.pageId = pageId;
+    }
+
+    /**
+     * @param score релевантность страницы
+     * @param pageId идентификатор страницы
+     * @return true если страница стоит в списке результатов после этой позиции
+     */
+    public boolean isBefore(float score, int pageId) {
+        return score < this.score || score == this.score && pageId > this.pageId;
+    }
+
+    /**
+     * @return строка позиции для передачи клиенту
+     */
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(SIZE);
+        buffer.put(VERSION).putFloat(score).putInt(pageId);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * @param value строка позиции, полученная от клиента
+     * @return позиция, null если строка повреждена
+     */
+    public static SearchCursor decode(String value) {
+        byte[] data;
+        try {
+            data = Base64.getUrlDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (data.length != SIZE || data[0] != VERSION) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(data, 1, SIZE - 1);
+        float score = buffer.getFloat();
+        int pageId = buffer.getInt();
+        return Float.isNaN(score) ? null : new SearchCursor(score, pageId);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SearchCursor)) {
+            return false;
+        }
+        SearchCursor cursor = (SearchCursor) o;
+        return Float.compare(score, cursor.score) == 0 && pageId == cursor.pageId;
+    }
+
+    @Override
+    public int hashCode() {
+        return Float.hashCode(score) * 31 + pageId;
+    }
+}
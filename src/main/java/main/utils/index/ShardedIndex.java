@@ -0,0 +1,128 @@
+package main.utils.index;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Обратный индекс, разделенный по сайтам: для каждого сайта хранится свой {@link InvertedIndex}.
+ * <p> Поиск по одному сайту обращается только к спискам страниц этого сайта, поэтому страницы
+ * других сайтов не перебираются и не отфильтровываются после поиска. При поиске по всем сайтам
+ * лучшие страницы отбираются в каждой части индекса и объединяются
+ */
+public class ShardedIndex {
+    // части индекса по идентификаторам сайтов
+    private final ConcurrentHashMap<Integer, InvertedIndex> shards = new ConcurrentHashMap<>();
+
+    /**
+     * Добавление или обновление рангов лемм на странице
+     * @param siteId идентификатор сайта страницы
+     * @param pageId идентификатор страницы
+     * @param ranks ранги лемм на странице: идентификатор леммы -> ранг
+     */
+    public void addPage(int siteId, int pageId, Map<Integer, Float> ranks) {
+        shards.computeIfAbsent(siteId, k -> new InvertedIndex()).addPage(pageId, ranks);
+    }
+
+    /**
+     * Удаление страниц сайта из индекса
+     * @param siteId идентификатор сайта страниц
+     * @param pageIds идентификаторы удаляемых страниц
+     * @param lemmaIds идентификаторы лемм, встречающихся на удаляемых страницах
+     */
+    public void removePages(int siteId, Set<Integer> pageIds, Collection<Integer> lemmaIds) {
+        InvertedIndex shard = shards.get(siteId);
+        if (shard != null) {
+            shard.removePages(pageIds, lemmaIds);
+        }
+    }
+
+    /**
+     * Поиск лучших страниц, на которых встречаются все заданные леммы
+     * @param lemmaIds идентификаторы лемм
+     * @param siteId идентификатор сайта, 0 - поиск по всем сайтам
+     * @param after позиция в списке результатов, null - с начала списка
+     * @param limit количество лучших страниц
+     * @return общее количество найденных страниц и лучшие страницы
+     */
+    public TopPages search(Collection<Integer> lemmaIds, int siteId, SearchCursor after, int limit) {
+        if (siteId != 0) {
+            InvertedIndex shard = shards.get(siteId);
+            return shard == null ? new TopPages(limit) : shard.search(lemmaIds, after, limit);
+        }
+        TopPages result = new TopPages(limit);
+        for (InvertedIndex shard : shards.values()) {
+            result.merge(shard.search(lemmaIds, after, limit));
+        }
+        return result;
+    }
+
+    /**
+     * @param lemmaId идентификатор леммы
+     * @return количество страниц всех сайтов, на которых встречается лемма
+     */
+    public int getPagesCount(int lemmaId) {
+        int count = 0;
+        for (InvertedIndex shard : shards.values()) {
+            count += shard.getPagesCount(lemmaId);
+        }
+        return count;
+    }
+
+    /**
+     * @return количество частей индекса, списков страниц, записей и размер сжатых данных в байтах
+     */
+    public long[] getStats() {
+        long lists = 0;
+        long entries = 0;
+        long bytes = 0;
+        for (InvertedIndex shard : shards.values()) {
+            long[] stats = shard.getStats();
+            lists += shard.getLemmasCount();
+            entries += stats[0];
+            bytes += stats[1];
+        }
+        return new long[]{shards.size(), lists, entries, bytes};
+    }
+
+    /**
+     * Построитель индекса для загрузки из базы, записи каждого сайта загружаются в свою часть индекса
+     */
+    public static class Loader {
+        // загружаемый индекс
+        private final ShardedIndex index;
+        // построители частей индекса по идентификаторам сайтов
+        private final HashMap<Integer, InvertedIndex.Loader> loaders = new HashMap<>();
+        // загружаемые части индекса
+        private final HashMap<Integer, InvertedIndex> shards = new HashMap<>();
+
+        public Loader(ShardedIndex index) {
+            this.index = index;
+        }
+
+        /**
+         * Добавление записи индекса
+         * @param siteId идентификатор сайта страницы
+         * @param lemmaId идентификатор леммы
+         * @param pageId идентификатор страницы
+         * @param rank ранг леммы на странице
+         */
+        public void add(int siteId, int lemmaId, int pageId, float rank) {
+            loaders.computeIfAbsent(siteId, k -> {
+                InvertedIndex shard = new InvertedIndex();
+                shards.put(siteId, shard);
+                return new InvertedIndex.Loader(shard);
+            }).add(lemmaId, pageId, rank);
+        }
+
+        /**
+         * Кодирование накопленных списков и замена ими содержимого индекса
+         */
+        public void finish() {
+            loaders.values().forEach(InvertedIndex.Loader::finish);
+            loaders.clear();
+            index.shards.clear();
+            index.shards.putAll(shards);
+            shards.clear();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package main.utils.index;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счетчики статистики сайта: количество страниц, лемм и индексов.
+ * <p> Для подсчета лемм хранится количество страниц сайта, на которых встречается каждая лемма,
+ * лемма учитывается, пока она есть хотя бы на одной странице сайта. Счетчики изменяются
+ * потоком записи страниц, значения читаются без блокировок
+ */
+public class SiteCounters {
+    // количество страниц сайта
+    private final AtomicInteger pages = new AtomicInteger();
+    // количество лемм, найденных на страницах сайта
+    private final AtomicInteger lemmas = new AtomicInteger();
+    // количество индексов страниц сайта
+    private final AtomicLong indexes = new AtomicLong();
+    // количество страниц сайта для каждой леммы: идентификатор леммы -> количество страниц
+    private final HashMap<Integer, Integer> lemmaPages = new HashMap<>();
+
+    /**
+     * Изменение количества страниц
+     * @param delta изменение количества страниц
+     */
+    public void addPages(int delta) {
+        pages.addAndGet(delta);
+    }
+
+    /**
+     * Изменение количества страниц сайта, на которых встречается лемма
+     * @param lemmaId идентификатор леммы
+     * @param delta изменение количества страниц, равно изменению количества индексов леммы
+     */
+    public synchronized void addLemmaPages(int lemmaId, int delta) {
+        int oldCount = lemmaPages.getOrDefault(lemmaId, 0);
+        int newCount = oldCount + delta;
+        if (newCount > 0) {
+            lemmaPages.put(lemmaId, newCount);
+        } else {
+            lemmaPages.remove(lemmaId);
+        }
+        if (oldCount <= 0 && newCount > 0) {
+            lemmas.incrementAndGet();
+        } else if (oldCount > 0 && newCount <= 0) {
+            lemmas.decrementAndGet();
+        }
+        indexes.addAndGet(delta);
+    }
+
+    /**
+     * @return количество страниц сайта
+     */
+    public int getPages() {
+        return pages.get();
+    }
+
+    /**
+     * @return количество лемм, найденных на страницах сайта
+     */
+    public int getLemmas() {
+        return lemmas.get();
+    }
+
+    /**
+     * @return количество индексов страниц сайта
+     */
+    public long getIndexes() {
+        return indexes.get();
+    }
+}
@@ -0,0 +1,175 @@
+package main.utils.index;
+
+import java.util.Arrays;
+
+/**
+ * Результат поиска по обратному индексу: общее количество найденных страниц
+ * и лучшие k страниц по релевантности.
+ * <p> Лучшие страницы хранятся в куче ограниченного размера, на вершине которой худшая из них,
+ * поэтому все найденные страницы не собираются в общий список и не сортируются.
+ * Массивы кучи растут по мере добавления страниц, поэтому большое k не занимает память заранее
+ */
+public class TopPages {
+    // начальный размер массивов кучи
+    private static final int INITIAL_SIZE = 16;
+
+    // максимальное количество хранимых страниц
+    private final int capacity;
+    // идентификаторы страниц в куче
+    private int[] pageIds;
+    // релевантность страниц в куче
+    private float[] scores;
+    // количество страниц в куче
+    private int size = 0;
+    // общее количество найденных страниц
+    private int totalCount = 0;
+
+    /**
+     * @param capacity максимальное количество хранимых страниц
+     */
+    public TopPages(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.pageIds = new int[Math.min(this.capacity, INITIAL_SIZE)];
+        this.scores = new float[this.pageIds.length];
+    }
+
+    /**
+     * Учет найденной страницы в общем количестве
+     */
+    void count() {
+        totalCount++;
+    }
+
+    /**
+     * @param score релевантность страницы или верхняя граница релевантности
+     * @param pageId идентификатор страницы
+     * @return true если страница с такой релевантностью попадет в число лучших
+     */
+    boolean isCompetitive(float score, int pageId) {
+        return size < capacity || capacity > 0 && isBetter(score, pageId, 0);
+    }
+
+    /**
+     * Добавление страницы, если она лучше худшей из хранимых
+     * @param pageId идентификатор страницы
+     * @param score релевантность страницы
+     */
+    void offer(int pageId, float score) {
+        if (size < capacity) {
+            if (size == pageIds.length) {
+                int length = (int) Math.min(capacity, size * 2L);
+                pageIds = Arrays.copyOf(pageIds, length);
+                scores = Arrays.copyOf(scores, length);
+            }
+            pageIds[size] = pageId;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (isCompetitive(score, pageId)) {
+            pageIds[0] = pageId;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Добавление результата поиска по другой части индекса: общее количество найденных страниц суммируется,
+     * лучшие страницы отбираются из страниц обоих результатов
+     * @param other результат поиска по другой части индекса
+     */
+    void merge(TopPages other) {
+        totalCount += other.totalCount;
+        for (int i = 0; i < other.size; i++) {
+            offer(other.pageIds[i], other.scores[i]);
+        }
+    }
+
+    /**
+     * @return общее количество найденных страниц
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @return идентификаторы лучших страниц по убыванию релевантности
+     */
+    public int[] getPageIds() {
+        int[] order = getOrder();
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = pageIds[order[i]];
+        }
+        return result;
+    }
+
+    /**
+     * @return релевантность лучших страниц по убыванию
+     */
+    public float[] getScores() {
+        int[] order = getOrder();
+        float[] result = new float[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = scores[order[i]];
+        }
+        return result;
+    }
+
+    /**
+     * @return позиции страниц в куче по убыванию релевантности
+     */
+    private int[] getOrder() {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> a.equals(b) ? 0 : (isBetter(scores[a], pageIds[a], b) ? -1 : 1));
+        return Arrays.stream(order).mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Сравнение страницы со страницей в куче: лучше та, у которой выше релевантность,
+     * при равной релевантности - та, у которой меньше идентификатор
+     */
+    private boolean isBetter(float score, int pageId, int index) {
+        return score > scores[index] || score == scores[index] && pageId < pageIds[index];
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (!isBetter(scores[parent], pageIds[parent], index)) {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int worst = index;
+            int left = index * 2 + 1;
+            int right = left + 1;
+            if (left < size && isBetter(scores[worst], pageIds[worst], left)) {
+                worst = left;
+            }
+            if (right < size && isBetter(scores[worst], pageIds[worst], right)) {
+                worst = right;
+            }
+            if (worst == index) {
+                return;
+            }
+            swap(index, worst);
+            index = worst;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int pageId = pageIds[a];
+        pageIds[a] = pageIds[b];
+        pageIds[b] = pageId;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -0,0 +1,79 @@
+package main.utils.morphology;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Анализатор слов на основе словаря библиотеки лемматизации,
+ * служебные части речи (предлоги, союзы, частицы и т.п.) не индексируются
+ */
+public class LuceneWordAnalyzer implements WordAnalyzer {
+    // регулярное выражения для игнорирования служебных частей речи при получении лемм для слов
+    private static final Pattern IGNORE_SERVICE_PARTS = Pattern.compile(".*(ПРЕДЛ|МЕЖД|СОЮЗ|МС|ЧАСТ|PREP|PART|CONJ|ARTICLE).*");
+
+    /**
+     * Функция создания словаря
+     */
+    public interface MorphologyLoader {
+        LuceneMorphology load() throws IOException;
+    }
+
+    // функция создания словаря
+    private final MorphologyLoader loader;
+    // словарь, загружается при первом обращении
+    private volatile LuceneMorphology morphology;
+
+    /**
+     * @param loader функция создания словаря, например RussianLuceneMorphology::new
+     */
+    public LuceneWordAnalyzer(MorphologyLoader loader) {
+        this.loader = loader;
+    }
+
+    public List<String> getBaseForms(String word) {
+        LuceneMorphology morphology = getMorphology();
+        ArrayList<String> result = new ArrayList<>();
+        try {
+            for (String morphInfo : morphology.getMorphInfo(word)) {
+                int delIndex = morphInfo.indexOf('|');
+                if (delIndex == -1 || IGNORE_SERVICE_PARTS.matcher(morphInfo).matches()) {
+                    continue;
+                }
+                String morphInfoWord = morphInfo.substring(0, delIndex);
+                if (!morphInfoWord.isEmpty()) {
+                    result.addAll(morphology.getNormalForms(morphInfoWord));
+                }
+            }
+        } catch (Exception ex) {
+            System.err.println("Ошибка поиска нормальных форм слова: " + ex + ", слово: " + word);
+            return Collections.emptyList();
+        }
+        return result;
+    }
+
+    /**
+     * @return словарь библиотеки лемматизации
+     */
+    private LuceneMorphology getMorphology() {
+        LuceneMorphology result = morphology;
+        if (result == null) {
+            synchronized (this) {
+                result = morphology;
+                if (result == null) {
+                    try {
+                        result = loader.load();
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                    morphology = result;
+                }
+            }
+        }
+        return result;
+    }
+}
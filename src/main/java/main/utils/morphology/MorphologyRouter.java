@@ -0,0 +1,46 @@
+package main.utils.morphology;
+
+import main.utils.text.TextTokenizer;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+
+/**
+ * Выбор анализатора слова по алфавиту, определенному по символам слова,
+ * без попыток разбора в словаре другого языка.
+ * <p> Для поддержки нового языка достаточно зарегистрировать анализатор для его алфавита,
+ * слова алфавитов без анализатора не индексируются
+ */
+public class MorphologyRouter {
+    // анализаторы по алфавитам
+    private final EnumMap<TextTokenizer.Script, WordAnalyzer> analyzers = new EnumMap<>(TextTokenizer.Script.class);
+
+    /**
+     * Регистрация анализатора для слов алфавита
+     * @param script алфавит
+     * @param analyzer анализатор
+     * @return этот обьект
+     */
+    public MorphologyRouter register(TextTokenizer.Script script, WordAnalyzer analyzer) {
+        analyzers.put(script, analyzer);
+        return this;
+    }
+
+    /**
+     * @param script алфавит слова
+     * @return true если для слов этого алфавита зарегистрирован анализатор
+     */
+    public boolean supports(TextTokenizer.Script script) {
+        return analyzers.containsKey(script);
+    }
+
+    /**
+     * @param word слово в нижнем регистре
+     * @return список возможных исходных форм слова
+     */
+    public List<String> getBaseForms(String word) {
+        WordAnalyzer analyzer = analyzers.get(TextTokenizer.getScript(word));
+        return analyzer == null ? Collections.emptyList() : analyzer.getBaseForms(word);
+    }
+}
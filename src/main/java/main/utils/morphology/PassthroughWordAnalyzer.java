@@ -0,0 +1,27 @@
+package main.utils.morphology;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Анализатор для чисел, артикулов и слов из букв разных алфавитов:
+ * слово индексируется как есть, без поиска в словаре
+ */
+public class PassthroughWordAnalyzer implements WordAnalyzer {
+    // максимальная длина индексируемого слова, более длинные (хеши, идентификаторы) пропускаются
+    private final int maxLength;
+
+    /**
+     * @param maxLength максимальная длина индексируемого слова
+     */
+    public PassthroughWordAnalyzer(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    public List<String> getBaseForms(String word) {
+        if (word.isEmpty() || word.length() > maxLength) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(word);
+    }
+}
@@ -0,0 +1,14 @@
+package main.utils.morphology;
+
+import java.util.List;
+
+/**
+ * Анализатор слов одного алфавита: получение исходных форм (лемм) слова
+ */
+public interface WordAnalyzer {
+    /**
+     * @param word слово в нижнем регистре
+     * @return список возможных исходных форм слова, пустой если слово не индексируется
+     */
+    List<String> getBaseForms(String word);
+}
@@ -0,0 +1,184 @@
+package main.utils.text;
+
+import main.model.Field;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.Evaluator;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
+import org.jsoup.select.QueryParser;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Извлечение текста полей страницы за один обход DOM.
+ * <p> Для каждого элемента один раз проверяются селекторы всех полей, текст передается обработчику
+ * вместе с маской полей, внутри элементов которых он находится. Поэтому текст вложенных элементов
+ * не извлекается повторно для каждого поля и для каждого вложенного совпадения селектора,
+ * а время обработки растет линейно с размером документа при любом количестве полей
+ */
+public class FieldTextExtractor {
+    // максимальное количество полей, ограничено размером маски
+    public static final int MAX_FIELDS = Long.SIZE;
+
+    /**
+     * Обработчик текста полей
+     */
+    public interface FieldTextConsumer {
+        /**
+         * @param text фрагмент текста, действителен только во время вызова
+         * @param fieldMask маска полей: бит i установлен, если текст находится внутри поля с порядковым номером i
+         */
+        void accept(CharSequence text, long fieldMask);
+    }
+
+    // селекторы полей по порядковым номерам
+    private final Evaluator[] evaluators;
+
+    /**
+     * @param fields список полей, порядковый номер поля в маске совпадает с индексом в списке
+     */
+    public FieldTextExtractor(List<Field> fields) {
+        if (fields.size() > MAX_FIELDS) {
+            throw new IllegalArgumentException("Количество полей больше " + MAX_FIELDS);
+        }
+        evaluators = new Evaluator[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            String selector = field.getSelector() == null ? field.getName() : field.getSelector();
+            evaluators[i] = QueryParser.parse(selector);
+        }
+    }
+
+    /**
+     * Обход документа и передача текста полей обработчику
+     * @param document документ
+     * @param consumer обработчик текста полей
+     */
+    public void extract(Document document, FieldTextConsumer consumer) {
+        extract(document, consumer, null);
+    }
+
+    /**
+     * Обход документа и передача текста полей обработчику, каждый узел также передается
+     * дополнительному обработчику, чтобы собрать другие данные страницы в том же обходе
+     * @param document документ
+     * @param consumer обработчик текста полей
+     * @param listener дополнительный обработчик узлов документа, может быть null
+     */
+    public void extract(Document document, FieldTextConsumer consumer, NodeVisitor listener) {
+        Visitor visitor = new Visitor(document, consumer, listener);
+        NodeTraversor.traverse(visitor, document);
+        visitor.flush();
+    }
+
+    /**
+     * Обход узлов документа: текст соседних узлов с одинаковой маской полей собирается в буфер,
+     * на границах блочных элементов добавляется пробел, как в {@link Element#text()}
+     */
+    private class Visitor implements NodeVisitor {
+        // корень документа для проверки селекторов
+        private final Document root;
+        // обработчик текста полей
+        private final FieldTextConsumer consumer;
+        // дополнительный обработчик узлов, может быть null
+        private final NodeVisitor listener;
+        // количество открытых элементов каждого поля
+        private final int[] openCounts = new int[evaluators.length];
+        // маски полей открытых элементов, для закрытия в tail
+        private long[] elementMasks = new long[64];
+        // текущая маска полей
+        private long mask = 0;
+        // накопленный текст с текущей маской
+        private final StringBuilder buffer = new StringBuilder();
+
+        private Visitor(Document root, FieldTextConsumer consumer, NodeVisitor listener) {
+            this.root = root;
+            this.consumer = consumer;
+            this.listener = listener;
+        }
+
+        @Override
+        public void head(Node node, int depth) {
+            if (listener != null) {
+                listener.head(node, depth);
+            }
+            if (node instanceof TextNode) {
+                if (mask != 0) {
+                    buffer.append(((TextNode) node).getWholeText());
+                }
+                return;
+            }
+            if (!(node instanceof Element)) {
+                return;
+            }
+            Element element = (Element) node;
+            if (mask != 0 && (element.isBlock() || element.normalName().equals("br"))) {
+                buffer.append(' ');
+            }
+            long elementMask = 0;
+            for (int i = 0; i < evaluators.length; i++) {
+                if (evaluators[i].matches(root, element)) {
+                    elementMask |= 1L << i;
+                    openCounts[i]++;
+                }
+            }
+            if (depth >= elementMasks.length) {
+                elementMasks = Arrays.copyOf(elementMasks, depth * 2);
+            }
+            elementMasks[depth] = elementMask;
+            if (elementMask != 0) {
+                updateMask();
+            }
+        }
+
+        @Override
+        public void tail(Node node, int depth) {
+            if (listener != null) {
+                listener.tail(node, depth);
+            }
+            if (!(node instanceof Element)) {
+                return;
+            }
+            Element element = (Element) node;
+            long elementMask = elementMasks[depth];
+            if (elementMask != 0) {
+                for (int i = 0; i < evaluators.length; i++) {
+                    if ((elementMask & (1L << i)) != 0) {
+                        openCounts[i]--;
+                    }
+                }
+                updateMask();
+            }
+            if (mask != 0 && element.isBlock()) {
+                buffer.append(' ');
+            }
+        }
+
+        /**
+         * Пересчет текущей маски полей, накопленный текст с прежней маской передается обработчику
+         */
+        private void updateMask() {
+            long newMask = 0;
+            for (int i = 0; i < evaluators.length; i++) {
+                if (openCounts[i] > 0) {
+                    newMask |= 1L << i;
+                }
+            }
+            if (newMask != mask) {
+                flush();
+                mask = newMask;
+            }
+        }
+
+        private void flush() {
+            if (mask != 0 && buffer.length() > 0) {
+                consumer.accept(buffer, mask);
+            }
+            buffer.setLength(0);
+        }
+    }
+}
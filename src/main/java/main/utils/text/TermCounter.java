@@ -0,0 +1,144 @@
+package main.utils.text;
+
+import main.utils.bypass.PageLemmas;
+
+import java.util.Arrays;
+
+/**
+ * Счетчик появлений лемм в полях страницы на массивах примитивов.
+ * <p> Вместо таблицы лемм с вложенными таблицами полей и обьектом Integer на каждое появление
+ * хранит леммы в таблице с открытой адресацией, а количества появлений - в общем массиве int,
+ * по {@code fieldsCount} значений на лемму в порядке номеров полей.
+ * <p> Обьект используется повторно для всех страниц, обрабатываемых потоком, и не потокобезопасен
+ */
+public class TermCounter {
+    // начальный размер таблицы, степень двойки
+    private static final int INITIAL_CAPACITY = 256;
+    // максимальный размер таблицы, который сохраняется между страницами
+    private static final int MAX_RETAINED_CAPACITY = 1 << 15;
+
+    // таблица: номер леммы + 1, 0 - пустая ячейка
+    private int[] table = new int[INITIAL_CAPACITY];
+    // леммы в порядке добавления
+    private String[] terms = new String[INITIAL_CAPACITY];
+    // количества появлений лемм в полях
+    private int[] counts = new int[0];
+    // количество полей
+    private int fieldsCount = 0;
+    // количество лемм
+    private int size = 0;
+
+    /**
+     * Подготовка к подсчету лемм новой страницы
+     * @param fieldsCount количество полей
+     */
+    public void reset(int fieldsCount) {
+        if (table.length > MAX_RETAINED_CAPACITY) {
+            table = new int[INITIAL_CAPACITY];
+            terms = new String[INITIAL_CAPACITY];
+            counts = new int[INITIAL_CAPACITY * fieldsCount];
+        } else {
+            Arrays.fill(table, 0);
+            Arrays.fill(terms, 0, size, null);
+            if (counts.length < terms.length * fieldsCount) {
+                counts = new int[terms.length * fieldsCount];
+            } else {
+                Arrays.fill(counts, 0, size * this.fieldsCount, 0);
+            }
+        }
+        this.fieldsCount = fieldsCount;
+        size = 0;
+    }
+
+    /**
+     * Учет появления леммы в полях
+     * @param term лемма
+     * @param fieldMask маска полей: бит i установлен, если лемма найдена в поле с номером i
+     */
+    public void add(String term, long fieldMask) {
+        int entry = findOrAdd(term);
+        int base = entry * fieldsCount;
+        for (int i = 0; i < fieldsCount; i++) {
+            if ((fieldMask & (1L << i)) != 0) {
+                counts[base + i]++;
+            }
+        }
+    }
+
+    /**
+     * @return количество лемм
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Расчет рангов лемм на странице: сумма по полям, в которых найдена лемма,
+     * веса поля и количества появлений леммы в поле
+     * @param weights веса полей по номерам
+     * @return леммы страницы и их ранги
+     */
+    public PageLemmas toPageLemmas(float[] weights) {
+        float[] ranks = new float[size];
+        for (int entry = 0; entry < size; entry++) {
+            float rank = 0.0f;
+            int base = entry * fieldsCount;
+            for (int i = 0; i < fieldsCount; i++) {
+                int count = counts[base + i];
+                if (count > 0) {
+                    rank += weights[i] + count;
+                }
+            }
+            ranks[entry] = rank;
+        }
+        return new PageLemmas(Arrays.copyOf(terms, size), ranks);
+    }
+
+    /**
+     * @return номер леммы, лемма добавляется если её нет в таблице
+     */
+    private int findOrAdd(String term) {
+        int mask = table.length - 1;
+        int index = spread(term.hashCode()) & mask;
+        while (table[index] != 0) {
+            int entry = table[index] - 1;
+            if (terms[entry].equals(term)) {
+                return entry;
+            }
+            index = (index + 1) & mask;
+        }
+        int entry = size++;
+        if (entry == terms.length) {
+            terms = Arrays.copyOf(terms, entry * 2);
+        }
+        if (counts.length < terms.length * fieldsCount) {
+            counts = Arrays.copyOf(counts, terms.length * fieldsCount);
+        }
+        terms[entry] = term;
+        table[index] = entry + 1;
+        if (size * 4L > table.length * 3L) {
+            resize();
+        }
+        return entry;
+    }
+
+    /**
+     * Увеличение таблицы в 2 раза при заполнении более чем на 3/4
+     */
+    private void resize() {
+        int[] newTable = new int[table.length * 2];
+        int mask = newTable.length - 1;
+        for (int entry = 0; entry < size; entry++) {
+            int index = spread(terms[entry].hashCode()) & mask;
+            while (newTable[index] != 0) {
+                index = (index + 1) & mask;
+            }
+            newTable[index] = entry + 1;
+        }
+        table = newTable;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,189 @@
+package main.utils.text;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+
+/**
+ * Разбивка текста на слова за один проход без регулярных выражений.
+ * <p> Словом считается последовательность букв и цифр, все остальные символы - разделители.
+ * Символы слова переводятся в нижний регистр и записываются в буфер, который используется повторно
+ * для всех слов текста, строка создается только при вызове {@link #token()}.
+ * <p> Слова приводятся к канонической форме: текст нормализуется в NFC, буква 'ё' заменяется на 'е',
+ * поэтому формы, которые MySQL считает равными, например 'тёмный' и 'темный', дают одну лемму.
+ * <p> Для каждого слова определяется алфавит, чтобы сразу выбрать нужный словарь лемматизации.
+ * Обьект не потокобезопасен, каждому потоку нужен свой экземпляр
+ */
+public class TextTokenizer {
+    /**
+     * Алфавит слова
+     */
+    public enum Script {
+        // русские буквы
+        CYRILLIC,
+        // латинские буквы
+        LATIN,
+        // только цифры
+        NUMBER,
+        // буквы разных алфавитов или буквы и цифры
+        MIXED,
+        // буквы других алфавитов
+        OTHER
+    }
+
+    // признаки символов слова
+    private static final int CYRILLIC = 1;
+    private static final int LATIN = 2;
+    private static final int DIGIT = 4;
+    private static final int OTHER = 8;
+
+    // разбиваемый текст
+    private CharSequence text = "";
+    // позиция следующего символа текста
+    private int pos = 0;
+    // символы текущего слова в нижнем регистре
+    private char[] buffer = new char[32];
+    // длина текущего слова
+    private int length = 0;
+    // алфавит текущего слова
+    private Script script = Script.OTHER;
+
+    /**
+     * Начало разбивки нового текста
+     * @param text текст
+     * @return этот обьект
+     */
+    public TextTokenizer reset(CharSequence text) {
+        if (text == null) {
+            text = "";
+        } else if (!Normalizer.isNormalized(text, Normalizer.Form.NFC)) {
+            // составные символы, например 'е' и комбинируемое двоеточие, объединяются в один символ
+            text = Normalizer.normalize(text, Normalizer.Form.NFC);
+        }
+        this.text = text;
+        pos = 0;
+        length = 0;
+        return this;
+    }
+
+    /**
+     * Переход к следующему слову текста
+     * @return false если слов больше нет
+     */
+    public boolean next() {
+        int end = text.length();
+        while (pos < end && !Character.isLetterOrDigit(text.charAt(pos))) {
+            pos++;
+        }
+        if (pos >= end) {
+            length = 0;
+            return false;
+        }
+        int flags = 0;
+        length = 0;
+        while (pos < end) {
+            char c = text.charAt(pos);
+            if (!Character.isLetterOrDigit(c)) {
+                break;
+            }
+            c = fold(Character.toLowerCase(c));
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, length * 2);
+            }
+            buffer[length++] = c;
+            flags |= classify(c);
+            pos++;
+        }
+        script = toScript(flags);
+        return true;
+    }
+
+    /**
+     * @return символы текущего слова, действительны до следующего вызова {@link #next()}
+     */
+    public char[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return длина текущего слова
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * @return алфавит текущего слова
+     */
+    public Script script() {
+        return script;
+    }
+
+    /**
+     * @return текущее слово
+     */
+    public String token() {
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Определение алфавита слова
+     * @param word слово в нижнем регистре
+     * @return алфавит слова
+     */
+    public static Script getScript(CharSequence word) {
+        int flags = 0;
+        for (int i = 0; i < word.length(); i++) {
+            flags |= classify(word.charAt(i));
+        }
+        return toScript(flags);
+    }
+
+    /**
+     * Приведение слова к канонической форме, в которой слова хранятся в словаре лемм
+     * @param word слово в нижнем регистре
+     * @return слово в канонической форме
+     */
+    public static String normalize(String word) {
+        if (!Normalizer.isNormalized(word, Normalizer.Form.NFC)) {
+            word = Normalizer.normalize(word, Normalizer.Form.NFC);
+        }
+        return word.replace('ё', 'е');
+    }
+
+    /**
+     * Замена символа, который MySQL не отличает от другого символа, например 'ё' и 'е'
+     * @param c символ в нижнем регистре
+     * @return символ в канонической форме
+     */
+    private static char fold(char c) {
+        return c == 'ё' ? 'е' : c;
+    }
+
+    private static int classify(char c) {
+        if (c >= 'а' && c <= 'я' || c == 'ё') {
+            return CYRILLIC;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return LATIN;
+        }
+        if (c >= '0' && c <= '9') {
+            return DIGIT;
+        }
+        return OTHER;
+    }
+
+    private static Script toScript(int flags) {
+        switch (flags) {
+            case CYRILLIC:
+                return Script.CYRILLIC;
+            case LATIN:
+                return Script.LATIN;
+            case DIGIT:
+                return Script.NUMBER;
+            case 0:
+                return Script.OTHER;
+            default:
+                return (flags & OTHER) != 0 ? Script.OTHER : Script.MIXED;
+        }
+    }
+}
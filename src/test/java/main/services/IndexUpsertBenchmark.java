@@ -0,0 +1,244 @@
+package main.services;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Сравнение скорости записи строк таблицы index: пакетные запросы 'INSERT ... ON DUPLICATE KEY UPDATE'
+ * из {@link IndexServiceImpl} и прежняя запись через Hibernate.
+ * <p> Прежняя запись воспроизводится запросами JDBC, которые выполнял Hibernate: чтение существующих строк
+ * страниц пакета, получение идентификатора каждой новой строки из таблицы hibernate_sequence в отдельной
+ * транзакции, вставка и обновление строк пакетами hibernate.jdbc.batch_size. Затраты самого Hibernate
+ * на сущности не учитываются, поэтому для прежней записи результат завышен.
+ * <p> По умолчанию запускается на H2 в режиме совместимости с MySQL, в параметрах можно передать
+ * адрес, пользователя и пароль базы MySQL (с rewriteBatchedStatements=true в адресе) и количество страниц:
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/classes:target/test-classes:$(cat cp.txt) main.services.IndexUpsertBenchmark [url user password pages]
+ * </pre>
+ * Таблицы index и hibernate_sequence в базе MySQL пересоздаются, поэтому нужна отдельная база
+ */
+public class IndexUpsertBenchmark {
+    // запрос записи индекса, как в IndexServiceImpl
+    private static final String UPSERT_INDEX_SQL = "INSERT INTO `index` (id, page_id, lemma_id, `rank`) " +
+            "VALUES (?, ?, ?, ?) ON DUPLICATE KEY UPDATE `rank` = VALUES(`rank`)";
+    // количество страниц по умолчанию и количество лемм на странице
+    private static final int DEFAULT_PAGES_COUNT = 2000;
+    private static final int PAGE_LEMMAS = 200;
+    // количество лемм в словаре
+    private static final int LEMMAS_COUNT = 50000;
+    // количество страниц в пакете записи (indexing.batch-size)
+    private static final int PAGES_BATCH_SIZE = 50;
+    // количество строк в пакете JDBC: indexing.jdbc-batch-size и hibernate.jdbc.batch_size
+    private static final int JDBC_BATCH_SIZE = 1000;
+    private static final int HIBERNATE_BATCH_SIZE = 100;
+
+    public static void main(String[] args) throws SQLException {
+        String url = args.length > 0 ? args[0] : "jdbc:h2:mem:bench;MODE=MySQL;DB_CLOSE_DELAY=-1";
+        String user = args.length > 1 ? args[1] : "";
+        String password = args.length > 2 ? args[2] : "";
+        int pagesCount = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_PAGES_COUNT;
+        List<HashMap<Integer, Float>> pages = generatePages(pagesCount, new Random(42));
+        List<HashMap<Integer, Float>> changedPages = changeRanks(pages, new Random(43));
+        System.out.println("База: " + url + ", страниц: " + pagesCount + ", лемм на странице: " + PAGE_LEMMAS);
+        try (Connection connection = DriverManager.getConnection(url, user, password);
+             Connection sequenceConnection = DriverManager.getConnection(url, user, password)) {
+            connection.setAutoCommit(false);
+            sequenceConnection.setAutoCommit(false);
+            for (int round = 0; round < 2; round++) {
+                // первый проход - прогрев
+                boolean report = round == 1;
+                createTables(connection);
+                long before = writeHibernate(connection, sequenceConnection, pages);
+                long beforeUpdate = writeHibernate(connection, sequenceConnection, changedPages);
+                createTables(connection);
+                long after = writeUpsert(connection, pages);
+                long afterUpdate = writeUpsert(connection, changedPages);
+                if (report) {
+                    long rows = (long) pagesCount * PAGE_LEMMAS;
+                    report("новые страницы", rows, before, after);
+                    report("повторная запись", rows, beforeUpdate, afterUpdate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Прежняя запись индексов: чтение существующих строк, идентификатор новой строки из hibernate_sequence,
+     * вставка и обновление пакетами
+     * @return время записи, нс
+     */
+    private static long writeHibernate(Connection connection, Connection sequenceConnection,
+                                       List<HashMap<Integer, Float>> pages) throws SQLException {
+        long start = System.nanoTime();
+        try (PreparedStatement nextVal = sequenceConnection.prepareStatement(
+                "SELECT next_val FROM hibernate_sequence FOR UPDATE");
+             PreparedStatement updateVal = sequenceConnection.prepareStatement(
+                     "UPDATE hibernate_sequence SET next_val = ? WHERE next_val = ?");
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO `index` (lemma_id, page_id, `rank`, id) VALUES (?, ?, ?, ?)");
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE `index` SET lemma_id = ?, page_id = ?, `rank` = ? WHERE id = ?")) {
+            for (int from = 0; from < pages.size(); from += PAGES_BATCH_SIZE) {
+                int to = Math.min(pages.size(), from + PAGES_BATCH_SIZE);
+                HashMap<Long, Integer> savedIds = readSavedIds(connection, from + 1, to);
+                int inserts = 0;
+                int updates = 0;
+                for (int i = from; i < to; i++) {
+                    int pageId = i + 1;
+                    for (Map.Entry<Integer, Float> entry : pages.get(i).entrySet()) {
+                        Integer id = savedIds.get(key(pageId, entry.getKey()));
+                        PreparedStatement statement = id == null ? insert : update;
+                        if (id == null) {
+                            id = nextId(sequenceConnection, nextVal, updateVal);
+                            inserts++;
+                        } else {
+                            updates++;
+                        }
+                        statement.setInt(1, entry.getKey());
+                        statement.setInt(2, pageId);
+                        statement.setFloat(3, entry.getValue());
+                        statement.setInt(4, id);
+                        statement.addBatch();
+                        if ((statement == insert ? inserts : updates) % HIBERNATE_BATCH_SIZE == 0) {
+                            statement.executeBatch();
+                        }
+                    }
+                }
+                insert.executeBatch();
+                update.executeBatch();
+                connection.commit();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Чтение идентификаторов сохраненных строк страниц пакета
+     * @return идентификаторы строк, ключ - идентификаторы страницы и леммы
+     */
+    private static HashMap<Long, Integer> readSavedIds(Connection connection, int fromPageId, int toPageId)
+            throws SQLException {
+        HashMap<Long, Integer> result = new HashMap<>();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT id, page_id, lemma_id, `rank` FROM `index` WHERE page_id BETWEEN ? AND ?")) {
+            select.setInt(1, fromPageId);
+            select.setInt(2, toPageId);
+            try (ResultSet rows = select.executeQuery()) {
+                while (rows.next()) {
+                    result.put(key(rows.getInt(2), rows.getInt(3)), rows.getInt(1));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Получение идентификатора новой строки из hibernate_sequence в отдельной транзакции
+     */
+    private static int nextId(Connection sequenceConnection, PreparedStatement nextVal, PreparedStatement updateVal)
+            throws SQLException {
+        long value;
+        try (ResultSet rows = nextVal.executeQuery()) {
+            rows.next();
+            value = rows.getLong(1);
+        }
+        updateVal.setLong(1, value + 1);
+        updateVal.setLong(2, value);
+        updateVal.executeUpdate();
+        sequenceConnection.commit();
+        return (int) value;
+    }
+
+    /**
+     * Запись индексов пакетными запросами 'INSERT ... ON DUPLICATE KEY UPDATE', как в IndexServiceImpl
+     * @return время записи, нс
+     */
+    private static long writeUpsert(Connection connection, List<HashMap<Integer, Float>> pages) throws SQLException {
+        long start = System.nanoTime();
+        int lastId = 0;
+        try (ResultSet rows = connection.createStatement().executeQuery("SELECT COALESCE(MAX(id), 0) FROM `index`")) {
+            rows.next();
+            lastId = rows.getInt(1);
+        }
+        try (PreparedStatement upsert = connection.prepareStatement(UPSERT_INDEX_SQL)) {
+            for (int from = 0; from < pages.size(); from += PAGES_BATCH_SIZE) {
+                int to = Math.min(pages.size(), from + PAGES_BATCH_SIZE);
+                int rowsCount = 0;
+                for (int i = from; i < to; i++) {
+                    for (Map.Entry<Integer, Float> entry : pages.get(i).entrySet()) {
+                        upsert.setInt(1, ++lastId);
+                        upsert.setInt(2, i + 1);
+                        upsert.setInt(3, entry.getKey());
+                        upsert.setFloat(4, entry.getValue());
+                        upsert.addBatch();
+                        if (++rowsCount % JDBC_BATCH_SIZE == 0) {
+                            upsert.executeBatch();
+                        }
+                    }
+                }
+                upsert.executeBatch();
+                connection.commit();
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Пересоздание таблиц index и hibernate_sequence
+     */
+    private static void createTables(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS `index`");
+            statement.execute("DROP TABLE IF EXISTS hibernate_sequence");
+            statement.execute("CREATE TABLE `index` (id INT NOT NULL PRIMARY KEY, page_id INT NOT NULL, " +
+                    "lemma_id INT NOT NULL, `rank` FLOAT NOT NULL, UNIQUE KEY page_lemma (page_id, lemma_id))");
+            statement.execute("CREATE TABLE hibernate_sequence (next_val BIGINT)");
+            statement.execute("INSERT INTO hibernate_sequence VALUES (1)");
+        }
+        connection.commit();
+    }
+
+    private static void report(String name, long rows, long before, long after) {
+        System.out.printf("%-17s Hibernate: %.0f мс (%.0f строк/с), upsert: %.0f мс (%.0f строк/с), ускорение: %.1fx%n",
+                name, before / 1e6, rows / (before / 1e9), after / 1e6, rows / (after / 1e9), (double) before / after);
+    }
+
+    private static long key(int pageId, int lemmaId) {
+        return (long) pageId << 32 | lemmaId;
+    }
+
+    /**
+     * Изменение рангов тех же лемм страниц для повторной записи
+     * @return новые ранги лемм для каждой страницы
+     */
+    private static List<HashMap<Integer, Float>> changeRanks(List<HashMap<Integer, Float>> pages, Random random) {
+        ArrayList<HashMap<Integer, Float>> result = new ArrayList<>();
+        for (HashMap<Integer, Float> ranks : pages) {
+            HashMap<Integer, Float> newRanks = new HashMap<>();
+            ranks.forEach((lemmaId, rank) -> newRanks.put(lemmaId, rank + random.nextInt(5) * 0.2f));
+            result.add(newRanks);
+        }
+        return result;
+    }
+
+    /**
+     * Генерация рангов лемм страниц
+     * @return ранги лемм для каждой страницы: идентификатор леммы -> ранг
+     */
+    private static List<HashMap<Integer, Float>> generatePages(int pagesCount, Random random) {
+        ArrayList<HashMap<Integer, Float>> pages = new ArrayList<>();
+        for (int i = 0; i < pagesCount; i++) {
+            HashMap<Integer, Float> ranks = new HashMap<>();
+            while (ranks.size() < PAGE_LEMMAS) {
+                ranks.put(1 + random.nextInt(LEMMAS_COUNT), 0.8f + random.nextInt(10) * 0.2f);
+            }
+            pages.add(ranks);
+        }
+        return pages;
+    }
+}
@@ -0,0 +1,141 @@
+package main.utils.text;
+
+import java.util.Random;
+
+/**
+ * Сравнение скорости разбивки текста на слова: {@link TextTokenizer} и прежняя разбивка
+ * регулярным выражением после перевода всего текста в нижний регистр.
+ * <p> Запускается отдельно от приложения, без базы и словарей лемматизации:
+ * <pre>
+ * mvn test-compile
+ * java -cp target/classes:target/test-classes main.utils.text.TokenizerBenchmark
+ * </pre>
+ * Текст страниц генерируется из русских и английских слов со знаками препинания и цифрами,
+ * результат - скорость разбивки в миллионах символов в секунду и время на одно слово
+ */
+public class TokenizerBenchmark {
+    // регулярное выражение, которым текст разбивался на слова до TextTokenizer
+    private static final String TEXT_SPLIT_REGEX = "( \\- )|[,.;:\"! ]";
+    // количество сгенерированных текстов страниц
+    private static final int PAGES_COUNT = 200;
+    // количество слов в тексте страницы
+    private static final int PAGE_WORDS = 2000;
+    // количество прогревочных и измеряемых проходов по всем текстам
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 20;
+    // обьект разбивки, как в LemmaServiceImpl используется повторно для всех текстов
+    private static final TextTokenizer TOKENIZER = new TextTokenizer();
+
+    private static final String[] WORDS = {
+            "поиск", "страница", "сайта", "Индексация", "леммы", "тёмный", "запросов", "движок", "Москва", "данные",
+            "search", "engine", "Page", "index", "the", "and", "of", "crawler", "Java", "text",
+            "2022", "10", "v2", "mp3", "covid-19", "e-mail", "Spring", "базы", "ответ", "результаты"
+    };
+    private static final String[] SEPARATORS = {" ", " ", " ", " ", ", ", ". ", "; ", ": ", " - ", "! ", "\n", "\t"};
+
+    public static void main(String[] args) {
+        String[] pages = generatePages(new Random(42));
+        long chars = 0;
+        for (String page : pages) {
+            chars += page.length();
+        }
+        System.out.println("Текстов: " + pages.length + ", символов: " + chars);
+        long regexTime = measure("regex split", pages, chars, TokenizerBenchmark::splitWithRegex);
+        long tokenizerTime = measure("TextTokenizer", pages, chars, TokenizerBenchmark::splitWithTokenizer);
+        System.out.printf("Ускорение: %.2fx%n", (double) regexTime / tokenizerTime);
+    }
+
+    /**
+     * Прежняя разбивка текста: перевод в нижний регистр и split по регулярному выражению
+     * @return количество слов и контрольная сумма их хешей
+     */
+    private static long[] splitWithRegex(String text) {
+        long count = 0;
+        long checksum = 0;
+        for (String word : text.toLowerCase().split(TEXT_SPLIT_REGEX)) {
+            if (word.length() == 0) {
+                continue;
+            }
+            count++;
+            checksum += word.hashCode();
+        }
+        return new long[]{count, checksum};
+    }
+
+    /**
+     * Разбивка текста TextTokenizer, строка создается для каждого слова русского или английского алфавита,
+     * как при поиске лемм в LemmaServiceImpl
+     * @return количество слов и контрольная сумма их хешей
+     */
+    private static long[] splitWithTokenizer(String text) {
+        long count = 0;
+        long checksum = 0;
+        TextTokenizer tokenizer = TOKENIZER.reset(text);
+        while (tokenizer.next()) {
+            TextTokenizer.Script script = tokenizer.script();
+            if (script != TextTokenizer.Script.CYRILLIC && script != TextTokenizer.Script.LATIN) {
+                continue;
+            }
+            count++;
+            checksum += tokenizer.token().hashCode();
+        }
+        return new long[]{count, checksum};
+    }
+
+    /**
+     * Прогрев и измерение времени разбивки всех текстов
+     * @return лучшее время прохода по всем текстам, нс
+     */
+    private static long measure(String name, String[] pages, long chars, Splitter splitter) {
+        long words = 0;
+        long checksum = 0;
+        for (int round = 0; round < WARMUP_ROUNDS; round++) {
+            for (String page : pages) {
+                checksum += splitter.split(page)[1];
+            }
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int round = 0; round < MEASURED_ROUNDS; round++) {
+            words = 0;
+            long start = System.nanoTime();
+            for (String page : pages) {
+                long[] result = splitter.split(page);
+                words += result[0];
+                checksum += result[1];
+            }
+            long time = System.nanoTime() - start;
+            best = Math.min(best, time);
+            total += time;
+        }
+        long average = total / MEASURED_ROUNDS;
+        System.out.printf("%-14s слов: %d, лучший проход: %.1f мс (%.1f млн символов/с, %.1f нс/слово), " +
+                        "средний: %.1f мс, контрольная сумма: %d%n",
+                name, words, best / 1e6, chars / (best / 1e9) / 1e6, (double) best / words,
+                average / 1e6, checksum);
+        return best;
+    }
+
+    /**
+     * Генерация текстов страниц из фиксированного набора слов и разделителей
+     */
+    private static String[] generatePages(Random random) {
+        String[] pages = new String[PAGES_COUNT];
+        for (int i = 0; i < PAGES_COUNT; i++) {
+            StringBuilder page = new StringBuilder();
+            for (int j = 0; j < PAGE_WORDS; j++) {
+                page.append(WORDS[random.nextInt(WORDS.length)]);
+                page.append(SEPARATORS[random.nextInt(SEPARATORS.length)]);
+            }
+            pages[i] = page.toString();
+        }
+        return pages;
+    }
+
+    /**
+     * Способ разбивки текста на слова
+     */
+    private interface Splitter {
+        long[] split(String text);
+    }
+}